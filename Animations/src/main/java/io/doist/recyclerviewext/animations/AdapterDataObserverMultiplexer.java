@@ -0,0 +1,318 @@
+package io.doist.recyclerviewext.animations;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Observes an adapter on behalf of multiple {@link RecyclerView.AdapterDataObserver}s, collecting all notifications
+ * until the next frame and delivering them as a single, normalized batch:
+ * <ul>
+ * <li>Adjacent inserts, removes and changes (with the same payload) are merged into a single range, even when other
+ * notifications for unrelated ranges came in between;
+ * <li>Removes of items inserted in the same batch cancel the insert out;
+ * <li>Any {@link RecyclerView.Adapter#notifyDataSetChanged()} replaces the whole batch.
+ * </ul>
+ *
+ * Observers registered here are notified after the adapter's own observers (eg. {@link RecyclerView} itself), so they
+ * must not be relied upon during the layout that follows the notifications. Call {@link #flush()} to deliver the
+ * pending batch immediately when needed.
+ */
+public class AdapterDataObserverMultiplexer extends RecyclerView.AdapterDataObserver
+        implements Choreographer.FrameCallback {
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+    private static final int OP_MOVE = 3;
+
+    private final RecyclerView.Adapter adapter;
+    private final List<RecyclerView.AdapterDataObserver> observers = new ArrayList<>();
+
+    // Pending operations stored as [type1, arg1, arg2, type2, ...], with payloads stored separately for changes.
+    private int[] ops = new int[30];
+    private Object[] payloads = new Object[10];
+    private int opCount;
+    private boolean changed;
+    private boolean scheduled;
+
+    public AdapterDataObserverMultiplexer(@NonNull RecyclerView.Adapter adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Registers {@code observer} to receive batched notifications, starting to observe the adapter if needed.
+     */
+    @UiThread
+    public void registerObserver(@NonNull RecyclerView.AdapterDataObserver observer) {
+        if (observers.isEmpty()) {
+            adapter.registerAdapterDataObserver(this);
+        }
+        observers.add(observer);
+    }
+
+    /**
+     * Unregisters {@code observer}, stopping to observe the adapter if it was the last one.
+     */
+    @UiThread
+    public void unregisterObserver(@NonNull RecyclerView.AdapterDataObserver observer) {
+        if (observers.remove(observer) && observers.isEmpty()) {
+            adapter.unregisterAdapterDataObserver(this);
+            clear();
+        }
+    }
+
+    /**
+     * Delivers all pending notifications right away.
+     */
+    @UiThread
+    public void flush() {
+        if (scheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            scheduled = false;
+        }
+
+        if (changed) {
+            clear();
+            for (int i = 0; i < observers.size(); i++) {
+                observers.get(i).onChanged();
+            }
+        } else if (opCount > 0) {
+            int[] ops = this.ops;
+            Object[] payloads = this.payloads;
+            int opCount = this.opCount;
+            // Swap in new buffers in case observers trigger more notifications.
+            this.ops = new int[ops.length];
+            this.payloads = new Object[payloads.length];
+            clear();
+            for (int i = 0; i < opCount; i++) {
+                int arg1 = ops[i * 3 + 1];
+                int arg2 = ops[i * 3 + 2];
+                for (int j = 0; j < observers.size(); j++) {
+                    RecyclerView.AdapterDataObserver observer = observers.get(j);
+                    switch (ops[i * 3]) {
+                        case OP_INSERT:
+                            observer.onItemRangeInserted(arg1, arg2);
+                            break;
+                        case OP_REMOVE:
+                            observer.onItemRangeRemoved(arg1, arg2);
+                            break;
+                        case OP_CHANGE:
+                            observer.onItemRangeChanged(arg1, arg2, payloads[i]);
+                            break;
+                        case OP_MOVE:
+                            observer.onItemRangeMoved(arg1, arg2, 1);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        flush();
+    }
+
+    @Override
+    public void onChanged() {
+        clear();
+        changed = true;
+        schedule();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+        if (changed) {
+            return;
+        }
+        addOrMerge(OP_CHANGE, positionStart, itemCount, payload);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        if (changed) {
+            return;
+        }
+        addOrMerge(OP_INSERT, positionStart, itemCount, null);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (changed) {
+            return;
+        }
+        addOrMerge(OP_REMOVE, positionStart, itemCount, null);
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        if (changed) {
+            return;
+        }
+        if (itemCount == 1) {
+            add(OP_MOVE, fromPosition, toPosition, null);
+        } else {
+            // RecyclerView only supports single item moves, but don't trust it.
+            onChanged();
+        }
+    }
+
+    /**
+     * Merges a new insert, remove or change into a pending operation that can absorb it, or appends it otherwise.
+     *
+     * Pending operations are walked from the last one. The new operation is carried back past those whose ranges it
+     * doesn't touch, adjusting its position, until one can absorb it. The walk stops at the first operation it
+     * interacts with in any other way, and at any move.
+     */
+    private void addOrMerge(int type, int positionStart, int itemCount, Object payload) {
+        int target = -1;
+        int position = positionStart;
+        for (int i = opCount - 1; i >= 0; i--) {
+            if (canMerge(i, type, position, itemCount, payload)) {
+                target = i;
+                break;
+            }
+            position = getPositionBefore(i, type, position, itemCount);
+            if (position == RecyclerView.NO_POSITION) {
+                break;
+            }
+        }
+        if (target == -1) {
+            add(type, positionStart, itemCount, payload);
+            return;
+        }
+
+        // Carry the operation back to the target, adjusting the operations it goes past as it now happens first.
+        position = positionStart;
+        for (int i = opCount - 1; i > target; i--) {
+            int positionBefore = getPositionBefore(i, type, position, itemCount);
+            if (type == OP_INSERT && position <= ops[i * 3 + 1]) {
+                ops[i * 3 + 1] += itemCount;
+            } else if (type == OP_REMOVE && position + itemCount <= ops[i * 3 + 1]) {
+                ops[i * 3 + 1] -= itemCount;
+            }
+            position = positionBefore;
+        }
+        merge(target, type, position, itemCount);
+        schedule();
+    }
+
+    /**
+     * Returns whether the pending operation at {@code index} can absorb a new operation at {@code position}, as seen
+     * right after it.
+     */
+    private boolean canMerge(int index, int type, int position, int itemCount, Object payload) {
+        int opType = ops[index * 3];
+        int opStart = ops[index * 3 + 1];
+        int opItemCount = ops[index * 3 + 2];
+        switch (type) {
+            case OP_CHANGE:
+                // Overlapping or adjacent change with the same payload.
+                return opType == OP_CHANGE && payloads[index] == payload
+                        && position <= opStart + opItemCount && position + itemCount >= opStart;
+            case OP_INSERT:
+                // Insert within or adjacent to an insert.
+                return opType == OP_INSERT && position >= opStart && position <= opStart + opItemCount;
+            default:
+                // Remove adjacent to a remove, or of items inserted by an insert.
+                return (opType == OP_REMOVE && (position == opStart || position + itemCount == opStart))
+                        || (opType == OP_INSERT && position >= opStart
+                        && position + itemCount <= opStart + opItemCount);
+        }
+    }
+
+    /**
+     * Returns the position that a new operation at {@code position}, as seen right after the pending operation at
+     * {@code index}, has right before it, or {@link RecyclerView#NO_POSITION} if their ranges interact.
+     */
+    private int getPositionBefore(int index, int type, int position, int itemCount) {
+        int opType = ops[index * 3];
+        int opStart = ops[index * 3 + 1];
+        int opItemCount = ops[index * 3 + 2];
+        // Inserts only take one position, the others take their range.
+        int end = type == OP_INSERT ? position : position + itemCount;
+        switch (opType) {
+            case OP_INSERT:
+                if (end <= opStart) {
+                    return position;
+                } else if (position >= opStart + opItemCount) {
+                    return position - opItemCount;
+                }
+                return RecyclerView.NO_POSITION;
+            case OP_REMOVE:
+                if (end <= opStart) {
+                    return position;
+                } else if (position >= opStart) {
+                    return position + opItemCount;
+                }
+                return RecyclerView.NO_POSITION;
+            case OP_CHANGE:
+                if (type == OP_INSERT ? position <= opStart || position >= opStart + opItemCount
+                                      : end <= opStart || position >= opStart + opItemCount) {
+                    return position;
+                }
+                return RecyclerView.NO_POSITION;
+            default:
+                // Moves aren't reordered.
+                return RecyclerView.NO_POSITION;
+        }
+    }
+
+    /**
+     * Merges a new operation into the pending operation at {@code index}, see
+     * {@link #canMerge(int, int, int, int, Object)}.
+     */
+    private void merge(int index, int type, int position, int itemCount) {
+        int opStart = ops[index * 3 + 1];
+        int opItemCount = ops[index * 3 + 2];
+        if (type == OP_CHANGE) {
+            int start = Math.min(opStart, position);
+            ops[index * 3 + 1] = start;
+            ops[index * 3 + 2] = Math.max(opStart + opItemCount, position + itemCount) - start;
+        } else if (type == OP_INSERT || ops[index * 3] == OP_REMOVE) {
+            ops[index * 3 + 1] = Math.min(opStart, position);
+            ops[index * 3 + 2] += itemCount;
+        } else if (opItemCount > itemCount) {
+            // Remove of inserted items, cancel them out.
+            ops[index * 3 + 2] -= itemCount;
+        } else {
+            System.arraycopy(ops, (index + 1) * 3, ops, index * 3, (opCount - index - 1) * 3);
+            System.arraycopy(payloads, index + 1, payloads, index, opCount - index - 1);
+            opCount--;
+            payloads[opCount] = null;
+        }
+    }
+
+    private void add(int type, int arg1, int arg2, Object payload) {
+        if (opCount * 3 == ops.length) {
+            ops = Arrays.copyOf(ops, ops.length * 2);
+            payloads = Arrays.copyOf(payloads, payloads.length * 2);
+        }
+        ops[opCount * 3] = type;
+        ops[opCount * 3 + 1] = arg1;
+        ops[opCount * 3 + 2] = arg2;
+        payloads[opCount] = payload;
+        opCount++;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            Choreographer.getInstance().postFrameCallback(this);
+            scheduled = true;
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(payloads, 0, opCount, null);
+        opCount = 0;
+        changed = false;
+    }
+}
@@ -1,6 +1,7 @@
 package io.doist.recyclerviewext.animations;
 
 import androidx.recyclerview.widget.RecyclerView;
+import io.doist.recyclerviewext.diff.DiffHandler;
 
 /**
  * Diff handler that works directly with the adapter, calling the corresponding {@code notify*} method for each change.
@@ -0,0 +1,144 @@
+package io.doist.recyclerviewext.animations;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * {@link LayerPolicy} that only uses hardware layers when they are likely to pay off:
+ * <ul>
+ * <li>Views larger than {@link #setMaxLayerArea(long)} never get a layer, as allocating it costs more than it saves;
+ * <li>View types cheaper to draw than {@link #setMinDrawTimeNanos(long)}, as measured by
+ * {@link #recordDrawTime(int, long)}, never get a layer, as redrawing them every frame is cheap. View types without
+ * measurements can get one;
+ * <li>Layers in use never exceed the memory budget, at 4 bytes per pixel;
+ * <li>Moves only get a layer if {@link #setUseLayersForMoves(boolean)} is enabled, as translating a view doesn't
+ * redraw it.
+ * </ul>
+ */
+public class AdaptiveLayerPolicy implements LayerPolicy {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final long maxLayerMemory;
+    private long maxLayerArea = Long.MAX_VALUE;
+    private long minDrawTimeNanos;
+    private boolean useLayersForMoves;
+
+    private long layerMemory;
+    private int layerCount;
+
+    // Average draw time per view type, stored in parallel arrays, as there are usually only a few view types.
+    private int[] viewTypes = new int[4];
+    private long[] drawTimes = new long[4];
+    private int viewTypeCount;
+
+    /**
+     * @param maxLayerMemory the maximum memory, in bytes, used by all layers at once. For instance, allowing as many
+     *                       layers as would fill the screen twice takes {@code 2 * 4 * screenWidth * screenHeight}.
+     */
+    public AdaptiveLayerPolicy(long maxLayerMemory) {
+        this.maxLayerMemory = maxLayerMemory;
+    }
+
+    /**
+     * Sets the area, in pixels, above which views never get a layer (unlimited by default).
+     */
+    public void setMaxLayerArea(long maxLayerArea) {
+        this.maxLayerArea = maxLayerArea;
+    }
+
+    /**
+     * Sets the average draw time below which views never get a layer (0 by default).
+     */
+    public void setMinDrawTimeNanos(long minDrawTimeNanos) {
+        this.minDrawTimeNanos = minDrawTimeNanos;
+    }
+
+    /**
+     * Sets whether moves can get a layer (disabled by default). Useful when items redraw while moving, for instance
+     * because they contain their own animations.
+     */
+    public void setUseLayersForMoves(boolean useLayersForMoves) {
+        this.useLayersForMoves = useLayersForMoves;
+    }
+
+    /**
+     * Records a measurement of the time taken to draw a view of {@code viewType}, for instance by timing its
+     * {@link View#draw(android.graphics.Canvas)}. Measurements are averaged, weighing the recent ones more.
+     */
+    public void recordDrawTime(int viewType, long drawTimeNanos) {
+        for (int i = 0; i < viewTypeCount; i++) {
+            if (viewTypes[i] == viewType) {
+                drawTimes[i] += (drawTimeNanos - drawTimes[i]) / 4;
+                return;
+            }
+        }
+        if (viewTypeCount == viewTypes.length) {
+            int[] viewTypes = new int[viewTypeCount * 2];
+            System.arraycopy(this.viewTypes, 0, viewTypes, 0, viewTypeCount);
+            this.viewTypes = viewTypes;
+            long[] drawTimes = new long[viewTypeCount * 2];
+            System.arraycopy(this.drawTimes, 0, drawTimes, 0, viewTypeCount);
+            this.drawTimes = drawTimes;
+        }
+        viewTypes[viewTypeCount] = viewType;
+        drawTimes[viewTypeCount] = drawTimeNanos;
+        viewTypeCount++;
+    }
+
+    /**
+     * Returns the average draw time of views of {@code viewType}, or -1 if there are no measurements.
+     */
+    public long getDrawTimeNanos(int viewType) {
+        for (int i = 0; i < viewTypeCount; i++) {
+            if (viewTypes[i] == viewType) {
+                return drawTimes[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the memory, in bytes, used by the layers in use.
+     */
+    public long getLayerMemory() {
+        return layerMemory;
+    }
+
+    @Override
+    public boolean shouldUseLayer(RecyclerView.ViewHolder holder, int animation) {
+        if (animation == ANIMATION_MOVE && !useLayersForMoves) {
+            return false;
+        }
+        long area = getArea(holder.itemView);
+        if (area == 0 || area > maxLayerArea) {
+            return false;
+        }
+        long drawTimeNanos = getDrawTimeNanos(holder.getItemViewType());
+        if (drawTimeNanos >= 0 && drawTimeNanos < minDrawTimeNanos) {
+            return false;
+        }
+        long memory = area * BYTES_PER_PIXEL;
+        if (layerMemory + memory > maxLayerMemory) {
+            return false;
+        }
+        layerMemory += memory;
+        layerCount++;
+        return true;
+    }
+
+    @Override
+    public void onLayerReleased(RecyclerView.ViewHolder holder, int animation) {
+        layerCount--;
+        if (layerCount == 0) {
+            // Start from scratch, in case views were resized while animating.
+            layerMemory = 0;
+        } else {
+            layerMemory = Math.max(layerMemory - getArea(holder.itemView) * BYTES_PER_PIXEL, 0);
+        }
+    }
+
+    private static long getArea(View view) {
+        return (long) view.getWidth() * view.getHeight();
+    }
+}
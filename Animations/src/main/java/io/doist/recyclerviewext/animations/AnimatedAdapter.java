@@ -1,18 +1,30 @@
 package io.doist.recyclerviewext.animations;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
+import io.doist.recyclerviewext.diff.ViewTypeDiffCallback;
 
 /**
  * Wrapper around {@link DataSetDiffer}, which adds functionality to animate between data sets.
  *
  * To seamlessly animate between data sets, call {@link #animateDataSetChanged()} in place of
  * {@link #notifyDataSetChanged()}.
+ *
+ * Items whose view type changed, as returned by {@link #getItemViewType(int)}, are removed and inserted again instead
+ * of changed, avoiding change animations between different layouts.
  */
 public abstract class AnimatedAdapter<VH extends RecyclerView.ViewHolder>
         extends RecyclerView.Adapter<VH>
-        implements DataSetDiffer.Callback {
+        implements DataSetDiffer.Callback, ViewTypeDiffCallback {
 
     private DataSetDiffer dataSetDiffer;
+    private StableIdRegistry stableIdRegistry;
+    private DataSetDiffer.DiffMetricsListener diffMetricsListener;
+    private final List<DataSetDiffer.OnDiffResultListener> onDiffResultListeners = new ArrayList<>();
 
     protected AnimatedAdapter() {
         setAnimationsEnabled(true);
@@ -38,12 +50,57 @@ public abstract class AnimatedAdapter<VH extends RecyclerView.ViewHolder>
     public final void setAnimationsEnabled(boolean enabled) {
         if (enabled && dataSetDiffer == null) {
             dataSetDiffer = new DataSetDiffer(this, this);
+            dataSetDiffer.setStableIdRegistry(stableIdRegistry);
+            dataSetDiffer.setDiffMetricsListener(diffMetricsListener);
+            for (int i = 0; i < onDiffResultListeners.size(); i++) {
+                dataSetDiffer.addOnDiffResultListener(onDiffResultListeners.get(i));
+            }
         } else if (!enabled && dataSetDiffer != null) {
             dataSetDiffer.stopObservingItems();
             dataSetDiffer = null;
         }
     }
 
+    /**
+     * @see DataSetDiffer#setStableIdRegistry(StableIdRegistry)
+     */
+    public final void setStableIdRegistry(StableIdRegistry stableIdRegistry) {
+        this.stableIdRegistry = stableIdRegistry;
+        if (dataSetDiffer != null) {
+            dataSetDiffer.setStableIdRegistry(stableIdRegistry);
+        }
+    }
+
+    /**
+     * @see DataSetDiffer#setDiffMetricsListener(DataSetDiffer.DiffMetricsListener)
+     */
+    public final void setDiffMetricsListener(@Nullable DataSetDiffer.DiffMetricsListener diffMetricsListener) {
+        this.diffMetricsListener = diffMetricsListener;
+        if (dataSetDiffer != null) {
+            dataSetDiffer.setDiffMetricsListener(diffMetricsListener);
+        }
+    }
+
+    /**
+     * @see DataSetDiffer#addOnDiffResultListener(DataSetDiffer.OnDiffResultListener)
+     */
+    public final void addOnDiffResultListener(@NonNull DataSetDiffer.OnDiffResultListener listener) {
+        onDiffResultListeners.add(listener);
+        if (dataSetDiffer != null) {
+            dataSetDiffer.addOnDiffResultListener(listener);
+        }
+    }
+
+    /**
+     * @see DataSetDiffer#removeOnDiffResultListener(DataSetDiffer.OnDiffResultListener)
+     */
+    public final void removeOnDiffResultListener(@NonNull DataSetDiffer.OnDiffResultListener listener) {
+        onDiffResultListeners.remove(listener);
+        if (dataSetDiffer != null) {
+            dataSetDiffer.removeOnDiffResultListener(listener);
+        }
+    }
+
     /**
      * Analyzes the data set using {@link #getItemId(int)} and {@link #getItemContentHash(int)} and calls the
      * necessary {@code notify*} methods to go from the previous data set to the new one.
@@ -57,4 +114,19 @@ public abstract class AnimatedAdapter<VH extends RecyclerView.ViewHolder>
             notifyDataSetChanged();
         }
     }
+
+    /**
+     * Analyzes the range of the data set that starts at {@code positionStart} and calls the necessary
+     * {@code notify*} methods to go from the previous range to the new one. The range spanned {@code oldItemCount}
+     * items before the update, and spans {@code newItemCount} items after it. Items outside of it are never looked at.
+     *
+     * This method should be called right after the data set is updated.
+     */
+    public void animateRangeChanged(int positionStart, int oldItemCount, int newItemCount) {
+        if (areAnimationsEnabled()) {
+            dataSetDiffer.diffRange(positionStart, oldItemCount, newItemCount);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
 }
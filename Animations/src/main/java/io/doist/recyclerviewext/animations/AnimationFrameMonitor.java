@@ -0,0 +1,82 @@
+package io.doist.recyclerviewext.animations;
+
+import android.view.Choreographer;
+
+/**
+ * Records frame durations through {@link Choreographer} while item animations run, and reports them as
+ * {@link AnimationStats} once they finish.
+ */
+class AnimationFrameMonitor implements Choreographer.FrameCallback {
+    // Frame interval assumed until shorter frames are observed, as for 60 Hz displays.
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private final AnimationMetricsListener listener;
+    private long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+
+    private AnimationStats stats;
+    private long startTimeNanos;
+    private long lastFrameTimeNanos;
+
+    AnimationFrameMonitor(AnimationMetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Called when {@code runPendingAnimations()} starts animations, starting a window if none is active.
+     */
+    void onAnimationsStarted(int holderCount, int skippedHolderCount) {
+        if (stats == null) {
+            stats = new AnimationStats();
+            startTimeNanos = System.nanoTime();
+            lastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        stats.batchCount++;
+        stats.holderCount += holderCount;
+        stats.skippedHolderCount += skippedHolderCount;
+    }
+
+    /**
+     * Called when all animations finished, ending the active window, if any.
+     */
+    void onAnimationsFinished() {
+        if (stats == null) {
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(this);
+        AnimationStats stats = this.stats;
+        this.stats = null;
+        stats.frameIntervalNanos = frameIntervalNanos;
+        stats.durationNanos = System.nanoTime() - startTimeNanos;
+        listener.onAnimationStats(stats);
+    }
+
+    /**
+     * Stops monitoring without reporting the active window.
+     */
+    void cancel() {
+        if (stats != null) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            stats = null;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (stats == null) {
+            return;
+        }
+        if (lastFrameTimeNanos != 0) {
+            long frameNanos = frameTimeNanos - lastFrameTimeNanos;
+            if (frameNanos > 0) {
+                // The shortest frames tell the display's refresh rate.
+                frameIntervalNanos = Math.min(frameIntervalNanos, frameNanos);
+                stats.frameCount++;
+                stats.worstFrameNanos = Math.max(stats.worstFrameNanos, frameNanos);
+                stats.droppedFrameCount += Math.max((frameNanos + frameIntervalNanos / 2) / frameIntervalNanos - 1, 0);
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
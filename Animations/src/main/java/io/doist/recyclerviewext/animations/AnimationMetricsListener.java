@@ -0,0 +1,13 @@
+package io.doist.recyclerviewext.animations;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Listener for the metrics of each window of item animations, invoked once all animations finish.
+ *
+ * @see WithLayerItemAnimator#setAnimationMetricsListener(AnimationMetricsListener)
+ * @see BatchedItemAnimator#setAnimationMetricsListener(AnimationMetricsListener)
+ */
+public interface AnimationMetricsListener {
+    void onAnimationStats(@NonNull AnimationStats stats);
+}
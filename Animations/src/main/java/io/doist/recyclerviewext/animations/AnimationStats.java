@@ -0,0 +1,97 @@
+package io.doist.recyclerviewext.animations;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Metrics of a window of item animations, from the first call to
+ * {@link androidx.recyclerview.widget.RecyclerView.ItemAnimator#runPendingAnimations()} that starts animations until
+ * all of them finish, delivered to {@link AnimationMetricsListener}.
+ *
+ * Frames are measured between consecutive {@link android.view.Choreographer} frames, so they include all work done in
+ * the UI thread during the window, such as binding and layout. All durations are in nanoseconds.
+ */
+public final class AnimationStats {
+    int batchCount;
+    int holderCount;
+    int skippedHolderCount;
+    int frameCount;
+    int droppedFrameCount;
+    long worstFrameNanos;
+    long frameIntervalNanos;
+    long durationNanos;
+
+    AnimationStats() {
+    }
+
+    /**
+     * Returns the number of calls to {@code runPendingAnimations()} that started animations in this window.
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the number of holders animated.
+     */
+    public int getHolderCount() {
+        return holderCount;
+    }
+
+    /**
+     * Returns the number of holders that jumped to their end state instead of animating, due to the animation budget
+     * or viewport culling.
+     */
+    public int getSkippedHolderCount() {
+        return skippedHolderCount;
+    }
+
+    /**
+     * Returns the number of frames drawn.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of frames that should have been drawn, but weren't as the previous ones took too long.
+     */
+    public int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * Returns the duration of the longest frame.
+     */
+    public long getWorstFrameNanos() {
+        return worstFrameNanos;
+    }
+
+    /**
+     * Returns the expected duration of each frame, as estimated from the shortest frames observed.
+     */
+    public long getFrameIntervalNanos() {
+        return frameIntervalNanos;
+    }
+
+    /**
+     * Returns the time between animations starting and all of them finishing.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "AnimationStats{" +
+                "batchCount=" + batchCount +
+                ", holderCount=" + holderCount +
+                ", skippedHolderCount=" + skippedHolderCount +
+                ", frameCount=" + frameCount +
+                ", droppedFrameCount=" + droppedFrameCount +
+                ", worstFrameNanos=" + worstFrameNanos +
+                ", frameIntervalNanos=" + frameIntervalNanos +
+                ", durationNanos=" + durationNanos +
+                '}';
+    }
+}
@@ -5,35 +5,58 @@ import android.os.Looper;
 
 import java.util.concurrent.Executor;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
+import io.doist.recyclerviewext.diff.DiffHandler;
+import io.doist.recyclerviewext.diff.DiffScript;
+import io.doist.recyclerviewext.diff.Items;
 
 /**
  * Adds functionality to animate differences between an adapter's data set and a new one.
  * In this variant, the differences are calculated in a background thread.
  *
- * When using this class, *never* update your data set or use any of the {@code notify*} methods between the call to
- * {@link #diffDataSet(AsyncCallback)} and the call to {@link AsyncCallback#submit()}.
+ * Each diff runs against a snapshot of the items pinned when {@link #diffDataSet(AsyncCallback)} is called. If the
+ * adapter is notified of other changes before the diff is done, its result is discarded and the diff runs again
+ * against the latest items. Results of diffs superseded by a newer call to {@link #diffDataSet(AsyncCallback)} are
+ * always discarded, and their {@link AsyncCallback#submit()} is never called.
+ *
+ * When using this class, *never* update your data set outside of {@link AsyncCallback#submit()} without notifying the
+ * adapter.
  *
  * @see DataSetDiffer
  */
 public class AsyncDataSetDiffer {
     private final Handler handler = new Handler(Looper.getMainLooper());
-    private final Executor executor = new LatestTaskAsyncTaskExecutor();
+    private final Executor executor;
 
     private final RecyclerView.Adapter adapter;
     private final DataSetDiffer dataSetDiffer;
-    private int runningDiffCount = 0;
+    private int latestDiff = 0;
 
     /**
+     * Diffs run in a dedicated thread with background priority, started when needed and stopped when idle.
+     *
      * @param adapter  Adapter with which this data set differ is associated.
      * @param callback Callback that provides information about the items set in the adapter.
      */
     public AsyncDataSetDiffer(RecyclerView.Adapter adapter, DataSetDiffer.Callback callback) {
+        this(adapter, callback, new BackgroundThreadExecutor("AsyncDataSetDiffer"));
+    }
+
+    /**
+     * @param adapter  Adapter with which this data set differ is associated.
+     * @param callback Callback that provides information about the items set in the adapter.
+     * @param executor Executor to run diffs in. Only the latest diff is kept and diffs never run concurrently.
+     */
+    public AsyncDataSetDiffer(RecyclerView.Adapter adapter, DataSetDiffer.Callback callback, Executor executor) {
         if (!adapter.hasStableIds()) {
             adapter.setHasStableIds(true);
         }
         this.adapter = adapter;
+        this.executor = new LatestTaskExecutor(executor);
         dataSetDiffer = new DataSetDiffer(adapter, callback);
     }
 
@@ -46,38 +69,124 @@ public class AsyncDataSetDiffer {
      *                 Note the difference between this callback and the one passed in the constructor.
      */
     @UiThread
-    public void diffDataSet(final AsyncCallback callback) {
-        // Pause adapter monitoring to avoid double counting changes.
-        if (runningDiffCount == 0) {
-            dataSetDiffer.stopObservingItems();
-        }
-        // Ensure stop / start observing items only happens on the first / last (respectively) call to this method.
-        // Note that between the original call and the runnable below runs, other calls to this method might happen.
-        runningDiffCount++;
+    public void diffDataSet(AsyncCallback callback) {
+        diff(callback, null);
+    }
+
+    /**
+     * Applies the precomputed {@code script} in the background, validating it against the current items and the
+     * data set provided by the supplied {@link AsyncCallback}. If it doesn't validate, the data sets are diffed as in
+     * {@link #diffDataSet(AsyncCallback)}.
+     * When done, calls {@link AsyncCallback#submit()} to ensure the data set is updated and triggers all necessary
+     * {@code notify} calls.
+     *
+     * @param script   Operations that change the current data set into the new one.
+     * @param callback Callback that provides information about the items *to be set* in the adapter.
+     */
+    @UiThread
+    public void applyDiffScript(DiffScript script, AsyncCallback callback) {
+        diff(callback, script);
+    }
+
+    private void diff(final AsyncCallback callback, @Nullable final DiffScript script) {
+        // Pin the current items. The snapshot is only copied when either it or the current items are modified.
+        final Items items = dataSetDiffer.snapshotItems();
+        final long version = items.getVersion();
+        final int diff = ++latestDiff;
+        final boolean recordResult = dataSetDiffer.hasOnDiffResultListeners();
+        final DiffStats stats = dataSetDiffer.hasDiffMetricsListener() ? new DiffStats() : null;
+        final long requestTime = stats != null ? System.nanoTime() : 0;
 
         // Diff data set in the background, apply the changes and notify in the UI thread.
         executor.execute(new Runnable() {
             @Override
             public void run() {
+                if (stats != null) {
+                    stats.queueDelayNanos = System.nanoTime() - requestTime;
+                }
                 final OpDiffHandler opDiffHandler = new OpDiffHandler();
-                dataSetDiffer.diffDataSet(opDiffHandler, callback);
+                final DiffResult.Recorder recorder =
+                        recordResult ? new DiffResult.Recorder(opDiffHandler, items.snapshot()) : null;
+                DiffHandler diffHandler = DataSetDiffer.wrap(opDiffHandler, recorder, stats);
+                final boolean scriptApplied;
+                if (script != null) {
+                    scriptApplied = DataSetDiffer.applyDiffScript(items, script, diffHandler, callback, stats);
+                } else {
+                    DataSetDiffer.diffItems(items, diffHandler, callback, stats);
+                    scriptApplied = false;
+                }
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
-                        callback.submit();
-                        opDiffHandler.notify(adapter);
+                        if (diff != latestDiff) {
+                            // Superseded by a newer diff, which will take care of the data set.
+                            return;
+                        }
+                        if (version != dataSetDiffer.getItemsVersion()) {
+                            // Items changed while diffing, so the operations no longer apply. Diff them again,
+                            // without the script, which was meant for the previous items.
+                            diff(callback, null);
+                            return;
+                        }
+
+                        Trace.beginSection("AsyncDataSetDiffer#apply");
+                        try {
+                            long applyStartTime = System.nanoTime();
+                            callback.submit();
 
-                        // Resume adapter monitoring.
-                        if (runningDiffCount == 1) {
+                            // Pause adapter monitoring to avoid double counting changes.
+                            dataSetDiffer.stopObservingItems();
+                            opDiffHandler.notify(adapter);
+                            dataSetDiffer.setItems(items);
                             dataSetDiffer.startObservingItems();
+                            if (stats != null) {
+                                stats.applyTimeNanos = System.nanoTime() - applyStartTime;
+                            }
+                        } finally {
+                            Trace.endSection();
+                        }
+
+                        DiffResult result = recorder != null ? recorder.build(items.snapshot()) : null;
+                        if (scriptApplied) {
+                            // Only items touched by the script were looked up.
+                            dataSetDiffer.onDataSetPartiallyDiffed(result, stats);
+                        } else {
+                            dataSetDiffer.onDataSetDiffed(result, stats);
                         }
-                        runningDiffCount--;
                     }
                 });
             }
         });
     }
 
+    /**
+     * @see DataSetDiffer#addOnDiffResultListener(DataSetDiffer.OnDiffResultListener)
+     */
+    public void addOnDiffResultListener(@NonNull DataSetDiffer.OnDiffResultListener listener) {
+        dataSetDiffer.addOnDiffResultListener(listener);
+    }
+
+    /**
+     * @see DataSetDiffer#removeOnDiffResultListener(DataSetDiffer.OnDiffResultListener)
+     */
+    public void removeOnDiffResultListener(@NonNull DataSetDiffer.OnDiffResultListener listener) {
+        dataSetDiffer.removeOnDiffResultListener(listener);
+    }
+
+    /**
+     * @see DataSetDiffer#setDiffMetricsListener(DataSetDiffer.DiffMetricsListener)
+     */
+    public void setDiffMetricsListener(@Nullable DataSetDiffer.DiffMetricsListener diffMetricsListener) {
+        dataSetDiffer.setDiffMetricsListener(diffMetricsListener);
+    }
+
+    /**
+     * @see DataSetDiffer#setStableIdRegistry(StableIdRegistry)
+     */
+    public void setStableIdRegistry(StableIdRegistry stableIdRegistry) {
+        dataSetDiffer.setStableIdRegistry(stableIdRegistry);
+    }
+
     /**
      * Callback for asynchronously calculating the difference between the current data set and a new one.
      *
@@ -0,0 +1,33 @@
+package io.doist.recyclerviewext.animations;
+
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Executor backed by a single thread running at {@link Process#THREAD_PRIORITY_BACKGROUND}, so that it doesn't
+ * compete with the UI and render threads. The thread is started lazily and exits after being idle for a while.
+ */
+class BackgroundThreadExecutor extends ThreadPoolExecutor {
+    private static final long KEEP_ALIVE_SECONDS = 3;
+
+    BackgroundThreadExecutor(@NonNull final String name) {
+        super(0, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, name);
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package io.doist.recyclerviewext.animations;
+
+/**
+ * Adapts the timing of item animations to the number of holders animated at once, so that large batches don't keep
+ * the list animating (and {@link androidx.recyclerview.widget.RecyclerView.ItemAnimator#isRunning()} true) for long:
+ * <ul>
+ * <li>Durations shrink as batches grow past {@link #setScalingThreshold(int)}, down to
+ * {@link #setMinDurationScale(float)} of the original;
+ * <li>Phases with at most {@link #setTrivialPhaseSize(int)} holders don't delay the following phases, running in
+ * parallel with them instead;
+ * <li>Additions can be staggered, starting at most {@link #setMaxAdditionsPerFrame(int)} of them per frame, in
+ * {@link WithLayerItemAnimator}.
+ * </ul>
+ *
+ * @see WithLayerItemAnimator#setTimingPolicy(BatchTimingPolicy)
+ * @see BatchedItemAnimator#setTimingPolicy(BatchTimingPolicy)
+ */
+public class BatchTimingPolicy {
+    // Delay between the start of consecutive groups of staggered additions, roughly a frame.
+    private static final long FRAME_DELAY_MS = 16;
+
+    private int scalingThreshold = 10;
+    private float minDurationScale = 0.5f;
+    private int trivialPhaseSize = 0;
+    private int maxAdditionsPerFrame = Integer.MAX_VALUE;
+
+    /**
+     * Sets the batch size up to which durations are not shortened (10 by default). Past it, durations are scaled by
+     * the square root of the threshold over the batch size.
+     */
+    public void setScalingThreshold(int scalingThreshold) {
+        this.scalingThreshold = scalingThreshold;
+    }
+
+    /**
+     * Sets the minimum scale applied to durations, however large the batch (0.5 by default).
+     */
+    public void setMinDurationScale(float minDurationScale) {
+        this.minDurationScale = minDurationScale;
+    }
+
+    /**
+     * Sets the number of holders up to which a phase doesn't delay the following ones (0 by default).
+     */
+    public void setTrivialPhaseSize(int trivialPhaseSize) {
+        this.trivialPhaseSize = trivialPhaseSize;
+    }
+
+    /**
+     * Sets the maximum number of additions that start in the same frame (unlimited by default).
+     */
+    public void setMaxAdditionsPerFrame(int maxAdditionsPerFrame) {
+        if (maxAdditionsPerFrame < 1) {
+            throw new IllegalArgumentException("Max additions per frame must be positive: " + maxAdditionsPerFrame);
+        }
+        this.maxAdditionsPerFrame = maxAdditionsPerFrame;
+    }
+
+    /**
+     * Returns the duration of an animation in a batch of {@code batchSize} holders, given its regular
+     * {@code duration}.
+     */
+    public long getDuration(long duration, int batchSize) {
+        if (batchSize <= scalingThreshold) {
+            return duration;
+        }
+        double scale = Math.max(Math.sqrt((double) scalingThreshold / batchSize), minDurationScale);
+        return (long) (duration * Math.min(scale, 1));
+    }
+
+    /**
+     * Returns whether a phase of {@code holderCount} holders is small enough not to delay the following phases.
+     */
+    public boolean isTrivialPhase(int holderCount) {
+        return holderCount <= trivialPhaseSize;
+    }
+
+    /**
+     * Returns the delay before starting the addition at {@code index} in its batch.
+     */
+    public long getAdditionStartDelay(int index) {
+        return (index / maxAdditionsPerFrame) * FRAME_DELAY_MS;
+    }
+}
@@ -0,0 +1,554 @@
+package io.doist.recyclerviewext.animations;
+
+import android.animation.Animator;
+import android.animation.ValueAnimator;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView.ViewHolder;
+import androidx.recyclerview.widget.SimpleItemAnimator;
+import androidx.tracing.Trace;
+
+/**
+ * Item animator with the same animations as {@link WithLayerItemAnimator}, but driven by a single
+ * {@link ValueAnimator} per phase (removals, moves, changes and additions) instead of one
+ * {@link android.view.ViewPropertyAnimator} per holder.
+ *
+ * The start and end values of every holder in a phase are stored contiguously in a float array, and are interpolated
+ * and set on each frame by the phase's only animator callback. This keeps the per-frame overhead flat as the number of
+ * animating holders grows. Hardware layers are not used, as they'd need to be built for every holder regardless.
+ *
+ * Phases, their arrays and the bookkeeping of each holder are pooled and reused across animations.
+ *
+ * Optionally, moves of holders that are still moving can be redirected without restarting them (see
+ * {@link #setMoveRetargetingEnabled(boolean)}).
+ */
+public class BatchedItemAnimator extends SimpleItemAnimator {
+    private static final int KIND_REMOVE = 0;
+    private static final int KIND_MOVE = 1;
+    private static final int KIND_CHANGE_OLD = 2;
+    private static final int KIND_CHANGE_NEW = 3;
+    private static final int KIND_ADD = 4;
+
+    // Minimum fraction of a phase that must remain for a running move to be redirected instead of restarted.
+    private static final float MIN_RETARGET_REMAINING_FRACTION = 0.25f;
+
+    private boolean mMoveRetargetingEnabled;
+    private AnimationFrameMonitor mFrameMonitor;
+    private BatchTimingPolicy mTimingPolicy;
+
+    // Phases collecting the animations scheduled since the last call to runPendingAnimations().
+    private Phase mPendingRemovals;
+    private Phase mPendingMoves;
+    private Phase mPendingChanges;
+    private Phase mPendingAdditions;
+
+    private final ArrayList<Phase> mRunningPhases = new ArrayList<>();
+
+    // Phase and index of every holder that is pending or running.
+    private final IdentityHashMap<ViewHolder, Slot> mSlots = new IdentityHashMap<>();
+
+    // Pools of phases and slots no longer in use.
+    private final ArrayList<Phase> mPhasePool = new ArrayList<>();
+    private final ArrayList<Slot> mSlotPool = new ArrayList<>();
+
+    private static class Slot {
+        public Phase phase;
+        public int index;
+    }
+
+    public BatchedItemAnimator() {
+        super();
+    }
+
+    public BatchedItemAnimator(boolean supportsChangeAnimations) {
+        setSupportsChangeAnimations(supportsChangeAnimations);
+    }
+
+    public boolean isMoveRetargetingEnabled() {
+        return mMoveRetargetingEnabled;
+    }
+
+    /**
+     * Sets whether holders that are still moving are redirected to their new position (disabled by default).
+     *
+     * When enabled, a move requested while the holder's previous move is running keeps the running animation, which
+     * continues from the holder's current position to its new one over the remaining duration, instead of ending the
+     * previous move and starting a new one. This avoids jumps when updates land in quick succession. The previous move
+     * is still dispatched as finished right away, as {@link androidx.recyclerview.widget.RecyclerView} expects every
+     * move to finish.
+     */
+    public void setMoveRetargetingEnabled(boolean enabled) {
+        mMoveRetargetingEnabled = enabled;
+    }
+
+    /**
+     * Sets the policy adapting durations and delays to the number of holders animated at once, if any.
+     *
+     * Additions are never staggered, as they're all driven by the same animator.
+     *
+     * @see WithLayerItemAnimator#setTimingPolicy(BatchTimingPolicy)
+     */
+    public void setTimingPolicy(@Nullable BatchTimingPolicy timingPolicy) {
+        mTimingPolicy = timingPolicy;
+    }
+
+    /**
+     * @see WithLayerItemAnimator#setAnimationMetricsListener(AnimationMetricsListener)
+     */
+    public void setAnimationMetricsListener(@Nullable AnimationMetricsListener animationMetricsListener) {
+        if (mFrameMonitor != null) {
+            mFrameMonitor.cancel();
+        }
+        mFrameMonitor = animationMetricsListener != null ? new AnimationFrameMonitor(animationMetricsListener) : null;
+    }
+
+    /**
+     * Animations that start and end together, driven by a single {@link ValueAnimator}.
+     */
+    private class Phase implements ValueAnimator.AnimatorUpdateListener, Animator.AnimatorListener {
+        // Values per holder, as [fromAlpha, toAlpha, fromTranslationX, toTranslationX, fromTranslationY,
+        // toTranslationY].
+        private static final int VALUE_COUNT = 6;
+
+        final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        // Ended holders are replaced with null, so that the indexes of the others remain valid.
+        final ArrayList<ViewHolder> holders = new ArrayList<>();
+        int[] kinds = new int[10];
+        float[] values = new float[10 * VALUE_COUNT];
+        int liveCount;
+        boolean running;
+        boolean started;
+
+        Phase() {
+            animator.addUpdateListener(this);
+            animator.addListener(this);
+        }
+
+        void add(ViewHolder holder, int kind, float fromAlpha, float toAlpha, float fromTranslationX,
+                 float toTranslationX, float fromTranslationY, float toTranslationY) {
+            int index = holders.size();
+            if (index == kinds.length) {
+                int[] kinds = new int[index + index / 2];
+                System.arraycopy(this.kinds, 0, kinds, 0, index);
+                this.kinds = kinds;
+                float[] values = new float[kinds.length * VALUE_COUNT];
+                System.arraycopy(this.values, 0, values, 0, index * VALUE_COUNT);
+                this.values = values;
+            }
+            holders.add(holder);
+            kinds[index] = kind;
+            int offset = index * VALUE_COUNT;
+            values[offset] = fromAlpha;
+            values[offset + 1] = toAlpha;
+            values[offset + 2] = fromTranslationX;
+            values[offset + 3] = toTranslationX;
+            values[offset + 4] = fromTranslationY;
+            values[offset + 5] = toTranslationY;
+            liveCount++;
+
+            Slot slot = !mSlotPool.isEmpty() ? mSlotPool.remove(mSlotPool.size() - 1) : new Slot();
+            slot.phase = this;
+            slot.index = index;
+            mSlots.put(holder, slot);
+        }
+
+        void start(long duration, long startDelay) {
+            running = true;
+            mRunningPhases.add(this);
+            animator.setDuration(duration);
+            animator.setStartDelay(startDelay);
+            animator.start();
+        }
+
+        /**
+         * Redirects the move of the holder at {@code index} so that it continues from the given translation, which
+         * must be its current position relative to its new layout position, and ends at it.
+         *
+         * @return true if the move was redirected, false if it's not a move or too little of it remains.
+         */
+        boolean retarget(int index, float translationX, float translationY) {
+            float remainingFraction = 1 - animator.getAnimatedFraction();
+            if (kinds[index] != KIND_MOVE || remainingFraction < MIN_RETARGET_REMAINING_FRACTION) {
+                return false;
+            }
+            ViewHolder holder = holders.get(index);
+            dispatchMoveFinished(holder);
+            if (started) {
+                dispatchMoveStarting(holder);
+            }
+            // Extrapolate the start values, so that the interpolation passes through the current position now.
+            int offset = index * VALUE_COUNT;
+            values[offset + 2] = translationX / remainingFraction;
+            values[offset + 3] = 0;
+            values[offset + 4] = translationY / remainingFraction;
+            values[offset + 5] = 0;
+            holder.itemView.setTranslationX(translationX);
+            holder.itemView.setTranslationY(translationY);
+            return true;
+        }
+
+        /**
+         * Ends the animation of the holder at {@code index}, setting its end state.
+         */
+        void end(int index) {
+            ViewHolder holder = holders.set(index, null);
+            View view = holder.itemView;
+            view.setAlpha(1);
+            view.setTranslationX(0);
+            view.setTranslationY(0);
+            switch (kinds[index]) {
+                case KIND_REMOVE:
+                    dispatchRemoveFinished(holder);
+                    break;
+                case KIND_MOVE:
+                    dispatchMoveFinished(holder);
+                    break;
+                case KIND_CHANGE_OLD:
+                    dispatchChangeFinished(holder, true);
+                    break;
+                case KIND_CHANGE_NEW:
+                    dispatchChangeFinished(holder, false);
+                    break;
+                default:
+                    dispatchAddFinished(holder);
+                    break;
+            }
+            Slot slot = mSlots.remove(holder);
+            slot.phase = null;
+            mSlotPool.add(slot);
+            liveCount--;
+            if (liveCount == 0 && running) {
+                // Nothing left to animate.
+                animator.cancel();
+            }
+        }
+
+        /**
+         * Ends the animations of all holders that haven't ended yet.
+         */
+        void endAll() {
+            for (int i = 0; i < holders.size(); i++) {
+                if (holders.get(i) != null) {
+                    end(i);
+                }
+            }
+        }
+
+        void recycle() {
+            holders.clear();
+            liveCount = 0;
+            mPhasePool.add(this);
+        }
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            started = true;
+            for (int i = 0; i < holders.size(); i++) {
+                ViewHolder holder = holders.get(i);
+                if (holder == null) {
+                    continue;
+                }
+                switch (kinds[i]) {
+                    case KIND_REMOVE:
+                        dispatchRemoveStarting(holder);
+                        break;
+                    case KIND_MOVE:
+                        dispatchMoveStarting(holder);
+                        break;
+                    case KIND_CHANGE_OLD:
+                        dispatchChangeStarting(holder, true);
+                        break;
+                    case KIND_CHANGE_NEW:
+                        dispatchChangeStarting(holder, false);
+                        break;
+                    default:
+                        dispatchAddStarting(holder);
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            Trace.beginSection("BatchedItemAnimator#frame");
+            float fraction = animation.getAnimatedFraction();
+            float[] values = this.values;
+            for (int i = 0; i < holders.size(); i++) {
+                ViewHolder holder = holders.get(i);
+                if (holder == null) {
+                    continue;
+                }
+                int offset = i * VALUE_COUNT;
+                View view = holder.itemView;
+                view.setAlpha(values[offset] + (values[offset + 1] - values[offset]) * fraction);
+                view.setTranslationX(values[offset + 2] + (values[offset + 3] - values[offset + 2]) * fraction);
+                view.setTranslationY(values[offset + 4] + (values[offset + 5] - values[offset + 4]) * fraction);
+            }
+            Trace.endSection();
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            started = false;
+            endAll();
+            mRunningPhases.remove(this);
+            recycle();
+            dispatchFinishedWhenDone();
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+    }
+
+    @Override
+    public void runPendingAnimations() {
+        boolean removalsPending = mPendingRemovals != null && mPendingRemovals.liveCount > 0;
+        boolean movesPending = mPendingMoves != null && mPendingMoves.liveCount > 0;
+        boolean changesPending = mPendingChanges != null && mPendingChanges.liveCount > 0;
+        boolean additionsPending = mPendingAdditions != null && mPendingAdditions.liveCount > 0;
+        if (!removalsPending && !movesPending && !additionsPending && !changesPending) {
+            // nothing to animate
+            return;
+        }
+        int removalCount = removalsPending ? mPendingRemovals.liveCount : 0;
+        int moveCount = movesPending ? mPendingMoves.liveCount : 0;
+        int changeCount = changesPending ? mPendingChanges.liveCount : 0;
+        int batchSize = removalCount + moveCount + changeCount + (additionsPending ? mPendingAdditions.liveCount : 0);
+        if (mFrameMonitor != null) {
+            mFrameMonitor.onAnimationsStarted(batchSize, 0);
+        }
+        long removeDuration = getDuration(getRemoveDuration(), batchSize);
+        long moveDuration = getDuration(getMoveDuration(), batchSize);
+        long changeDuration = getDuration(getChangeDuration(), batchSize);
+        // Phases small enough don't delay the following ones.
+        long removeDelay = removalsPending && !isTrivialPhase(removalCount) ? removeDuration : 0;
+        long moveDelay = movesPending && !isTrivialPhase(moveCount) ? moveDuration : 0;
+        long changeDelay = changesPending && !isTrivialPhase(changeCount) ? changeDuration : 0;
+        // First, remove stuff
+        startPhase(mPendingRemovals, removeDuration, 0);
+        mPendingRemovals = null;
+        // Next, move stuff, and change stuff in parallel
+        startPhase(mPendingMoves, moveDuration, removeDelay);
+        mPendingMoves = null;
+        startPhase(mPendingChanges, changeDuration, removeDelay);
+        mPendingChanges = null;
+        // Next, add stuff
+        startPhase(mPendingAdditions, getDuration(getAddDuration(), batchSize),
+                   removeDelay + Math.max(moveDelay, changeDelay));
+        mPendingAdditions = null;
+    }
+
+    private long getDuration(long duration, int batchSize) {
+        return mTimingPolicy != null ? mTimingPolicy.getDuration(duration, batchSize) : duration;
+    }
+
+    private boolean isTrivialPhase(int holderCount) {
+        return mTimingPolicy != null && mTimingPolicy.isTrivialPhase(holderCount);
+    }
+
+    private void startPhase(Phase phase, long duration, long startDelay) {
+        if (phase == null) {
+            return;
+        }
+        if (phase.liveCount > 0) {
+            phase.start(duration, startDelay);
+        } else {
+            phase.recycle();
+        }
+    }
+
+    private Phase obtainPhase(Phase phase) {
+        if (phase != null) {
+            return phase;
+        }
+        return !mPhasePool.isEmpty() ? mPhasePool.remove(mPhasePool.size() - 1) : new Phase();
+    }
+
+    @Override
+    public boolean animateRemove(final ViewHolder holder) {
+        resetAnimation(holder);
+        View view = holder.itemView;
+        float translationX = view.getTranslationX();
+        float translationY = view.getTranslationY();
+        mPendingRemovals = obtainPhase(mPendingRemovals);
+        mPendingRemovals.add(holder, KIND_REMOVE, view.getAlpha(), 0, translationX, translationX, translationY,
+                             translationY);
+        return true;
+    }
+
+    @Override
+    public boolean animateAdd(final ViewHolder holder) {
+        resetAnimation(holder);
+        View view = holder.itemView;
+        view.setAlpha(0);
+        float translationX = view.getTranslationX();
+        float translationY = view.getTranslationY();
+        mPendingAdditions = obtainPhase(mPendingAdditions);
+        mPendingAdditions.add(holder, KIND_ADD, 0, 1, translationX, translationX, translationY, translationY);
+        return true;
+    }
+
+    @Override
+    public boolean animateMove(final ViewHolder holder, int fromX, int fromY, int toX, int toY) {
+        final View view = holder.itemView;
+        fromX += (int) holder.itemView.getTranslationX();
+        fromY += (int) holder.itemView.getTranslationY();
+        int deltaX = toX - fromX;
+        int deltaY = toY - fromY;
+        if (mMoveRetargetingEnabled && retargetMove(holder, deltaX, deltaY)) {
+            return true;
+        }
+        resetAnimation(holder);
+        if (deltaX == 0 && deltaY == 0) {
+            dispatchMoveFinished(holder);
+            return false;
+        }
+        if (deltaX != 0) {
+            view.setTranslationX(-deltaX);
+        }
+        if (deltaY != 0) {
+            view.setTranslationY(-deltaY);
+        }
+        float translationX = view.getTranslationX();
+        float translationY = view.getTranslationY();
+        mPendingMoves = obtainPhase(mPendingMoves);
+        mPendingMoves.add(holder, KIND_MOVE, view.getAlpha(), view.getAlpha(), translationX,
+                          deltaX != 0 ? 0 : translationX, translationY, deltaY != 0 ? 0 : translationY);
+        return true;
+    }
+
+    /**
+     * Redirects the running move of {@code holder} by the given amounts, if possible.
+     */
+    private boolean retargetMove(ViewHolder holder, int deltaX, int deltaY) {
+        if (deltaX == 0 && deltaY == 0) {
+            // Already where it should be, end the move as usual.
+            return false;
+        }
+        Slot slot = mSlots.get(holder);
+        return slot != null && slot.phase.running && slot.phase.retarget(slot.index, -deltaX, -deltaY);
+    }
+
+    @Override
+    public boolean animateChange(ViewHolder oldHolder, ViewHolder newHolder, int fromX, int fromY, int toX, int toY) {
+        if (oldHolder == newHolder) {
+            // Don't know how to run change animations when the same view holder is re-used.
+            // run a move animation to handle position changes.
+            return animateMove(oldHolder, fromX, fromY, toX, toY);
+        }
+        final float prevTranslationX = oldHolder.itemView.getTranslationX();
+        final float prevTranslationY = oldHolder.itemView.getTranslationY();
+        final float prevAlpha = oldHolder.itemView.getAlpha();
+        resetAnimation(oldHolder);
+        int deltaX = (int) (toX - fromX - prevTranslationX);
+        int deltaY = (int) (toY - fromY - prevTranslationY);
+        // recover prev translation state after ending animation
+        oldHolder.itemView.setTranslationX(prevTranslationX);
+        oldHolder.itemView.setTranslationY(prevTranslationY);
+        oldHolder.itemView.setAlpha(prevAlpha);
+        mPendingChanges = obtainPhase(mPendingChanges);
+        mPendingChanges.add(oldHolder, KIND_CHANGE_OLD, prevAlpha, 0, prevTranslationX, toX - fromX,
+                            prevTranslationY, toY - fromY);
+        if (newHolder != null) {
+            // carry over translation values
+            resetAnimation(newHolder);
+            newHolder.itemView.setTranslationX(-deltaX);
+            newHolder.itemView.setTranslationY(-deltaY);
+            newHolder.itemView.setAlpha(0);
+            mPendingChanges.add(newHolder, KIND_CHANGE_NEW, 0, 1, -deltaX, 0, -deltaY, 0);
+        }
+        return true;
+    }
+
+    @Override
+    public void endAnimation(ViewHolder item) {
+        Slot slot = mSlots.get(item);
+        if (slot != null) {
+            slot.phase.end(slot.index);
+        }
+        dispatchFinishedWhenDone();
+    }
+
+    private void resetAnimation(ViewHolder holder) {
+        endAnimation(holder);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !mSlots.isEmpty();
+    }
+
+    /**
+     * Check the state of currently pending and running animations. If there are none
+     * pending/running, call {@link #dispatchAnimationsFinished()} to notify any
+     * listeners.
+     */
+    private void dispatchFinishedWhenDone() {
+        if (!isRunning()) {
+            dispatchAnimationsFinished();
+            if (mFrameMonitor != null) {
+                mFrameMonitor.onAnimationsFinished();
+            }
+        }
+    }
+
+    @Override
+    public void endAnimations() {
+        mPendingRemovals = endPendingPhase(mPendingRemovals);
+        mPendingMoves = endPendingPhase(mPendingMoves);
+        mPendingChanges = endPendingPhase(mPendingChanges);
+        mPendingAdditions = endPendingPhase(mPendingAdditions);
+        if (mRunningPhases.isEmpty()) {
+            if (mFrameMonitor != null) {
+                mFrameMonitor.onAnimationsFinished();
+            }
+            return;
+        }
+
+        // Cancelling a phase ends its animations and removes it from the running phases.
+        for (int i = mRunningPhases.size() - 1; i >= 0; i--) {
+            if (i < mRunningPhases.size()) {
+                mRunningPhases.get(i).animator.cancel();
+            }
+        }
+
+        dispatchAnimationsFinished();
+        if (mFrameMonitor != null) {
+            mFrameMonitor.onAnimationsFinished();
+        }
+    }
+
+    private Phase endPendingPhase(Phase phase) {
+        if (phase != null) {
+            phase.endAll();
+            phase.recycle();
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As in {@link WithLayerItemAnimator}, holders are reused when the payload list is not empty, running a move
+     * animation instead of a change animation.
+     */
+    @Override
+    public boolean canReuseUpdatedViewHolder(@NonNull ViewHolder viewHolder, @NonNull List<Object> payloads) {
+        return !payloads.isEmpty() || super.canReuseUpdatedViewHolder(viewHolder, payloads);
+    }
+}
@@ -1,7 +1,19 @@
 package io.doist.recyclerviewext.animations;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
+import io.doist.recyclerviewext.diff.DiffCallback;
+import io.doist.recyclerviewext.diff.DiffHandler;
+import io.doist.recyclerviewext.diff.DiffScript;
+import io.doist.recyclerviewext.diff.Items;
+import io.doist.recyclerviewext.diff.ItemsDiffer;
+import io.doist.recyclerviewext.diff.ViewTypeDiffCallback;
 
 /**
  * Adds functionality to animate differences between an adapter's data set and a new one.
@@ -17,6 +29,11 @@ public class DataSetDiffer {
 
     private final AdapterNotifyDiffHandler adapterNotifyDiffHandler;
 
+    private final List<OnDiffResultListener> onDiffResultListeners = new ArrayList<>();
+
+    private StableIdRegistry stableIdRegistry;
+    private DiffMetricsListener diffMetricsListener;
+
     /**
      * @param adapter  Adapter with which this data set differ is associated.
      * @param callback Callback that provides information about the items set in the adapter.
@@ -40,124 +57,234 @@ public class DataSetDiffer {
         // Pause adapter monitoring to avoid double counting changes.
         stopObservingItems();
 
-        // Diff data set using the default diff handler and callback.
-        diffDataSet(adapterNotifyDiffHandler, callback);
+        // Diff data set using the default diff handler and callback, recording the result and stats only if needed.
+        DiffResult.Recorder recorder =
+                hasOnDiffResultListeners() ? new DiffResult.Recorder(adapterNotifyDiffHandler, items.snapshot()) : null;
+        DiffStats stats = hasDiffMetricsListener() ? new DiffStats() : null;
+        diffItems(items, wrap(adapterNotifyDiffHandler, recorder, stats), callback, stats);
 
         // Resume adapter monitoring.
         startObservingItems();
+
+        onDataSetDiffed(recorder != null ? recorder.build(items.snapshot()) : null, stats);
     }
 
-    void diffDataSet(DiffHandler diffHandler, Callback callback) {
-        // Prepare adapter items.
-        int itemCount = callback.getItemCount();
-        Items adapterItems = new Items(itemCount);
-        for (int i = 0; i < itemCount; i++) {
-            adapterItems.add(callback.getItemId(i), callback.getItemContentHash(i));
-        }
-
-        items.ensureCapacity(itemCount);
-
-        // Remove all missing items up front to make positions more predictable in the second loop.
-        int removePosition = -1;
-        int removeCount = 0;
-        for (int i = 0; i < items.size(); i++) {
-            // Check if the item was removed.
-            if (adapterItems.indexOfId(items.getId(i), i) == -1) {
-                items.remove(i);
-
-                if (removePosition == -1) {
-                    removePosition = i;
-                    removeCount = 1;
-                } else {
-                    removeCount++;
-                }
-
-                i--;
-            } else if (removePosition != -1) {
-                // Commit pending remove since the current is still there.
-                diffHandler.onItemRangeRemoved(removePosition, removeCount);
-                removePosition = -1;
-            }
+    /**
+     * Analyzes the range of the data set that starts at {@code positionStart} using the supplied {@link Callback} and
+     * triggers all necessary {@code notify*} calls. The range spanned {@code oldItemCount} items before the changes,
+     * and spans {@code newItemCount} items after them. The rest of the data set is assumed unchanged and is never
+     * looked at, so the new item count must differ from the old one by exactly the range's.
+     */
+    @UiThread
+    public void diffRange(int positionStart, int oldItemCount, int newItemCount) {
+        if (positionStart < 0 || oldItemCount < 0 || newItemCount < 0
+                || positionStart + oldItemCount > items.size()
+                || items.size() - oldItemCount + newItemCount != callback.getItemCount()) {
+            throw new IllegalArgumentException(
+                    "Invalid range: positionStart=" + positionStart + ", oldItemCount=" + oldItemCount
+                            + ", newItemCount=" + newItemCount + ", oldSize=" + items.size()
+                            + ", newSize=" + callback.getItemCount());
         }
-        if (removePosition != -1) {
-            diffHandler.onItemRangeRemoved(removePosition, removeCount);
-        }
-
-        // Add, change or move items based on their animation / change id.
-        int insertPosition = -1;
-        int insertCount = 0;
-        int changePosition = -1;
-        int changeCount = 0;
-        for (int i = 0; i < itemCount; i++) {
-            // Check if the item was inserted.
-            int oldPosition = items.indexOfId(adapterItems.getId(i), i);
-            if (oldPosition != -1) {
-                // Item was in the previous data set, it can have moved and / or changed.
-
-                // Commit pending insert since the current wasn't inserted and it'd conflict with the move / change.
-                if (insertPosition != -1) {
-                    diffHandler.onItemRangeInserted(insertPosition, insertCount);
-                    insertPosition = -1;
-                }
-
-                // Check if the item was moved.
-                if (oldPosition != i) {
-                    // Commit pending change to avoid conflicts with the move added below.
-                    if (changePosition != -1) {
-                        diffHandler.onItemRangeChanged(changePosition, changeCount);
-                        changePosition = -1;
-                    }
-
-                    long movedId = items.getId(oldPosition);
-                    long movedChangeHash = items.getContentHash(oldPosition);
-                    items.remove(oldPosition);
-                    items.add(i, movedId, movedChangeHash);
-
-                    diffHandler.onItemMoved(oldPosition, i);
-                }
-
-                // Check if the item was changed.
-                if (items.getContentHash(i) != adapterItems.getContentHash(i)) {
-                    items.setContentHash(i, adapterItems.getContentHash(i));
-
-                    if (changePosition == -1) {
-                        changePosition = i;
-                        changeCount = 1;
-                    } else {
-                        changeCount++;
-                    }
-                } else {
-                    // Commit pending change since the current didn't change.
-                    if (changePosition != -1) {
-                        diffHandler.onItemRangeChanged(changePosition, changeCount);
-                        changePosition = -1;
-                    }
-                }
-            } else {
-                // Item was not in the previous data set, it was added.
-
-                // Commit pending change now to avoid conflicts with the move added below.
-                if (changePosition != -1) {
-                    diffHandler.onItemRangeChanged(changePosition, changeCount);
-                    changePosition = -1;
-                }
-
-                items.add(i, adapterItems.getId(i), adapterItems.getContentHash(i));
-
-                if (insertPosition == -1) {
-                    insertPosition = i;
-                    insertCount = 1;
-                } else {
-                    insertCount++;
-                }
+
+        // Pause adapter monitoring to avoid double counting changes.
+        stopObservingItems();
+
+        // Diff the range on its own, offsetting all positions, and splice the result back in.
+        DiffResult.Recorder recorder =
+                hasOnDiffResultListeners() ? new DiffResult.Recorder(adapterNotifyDiffHandler, items.snapshot()) : null;
+        DiffStats stats = hasDiffMetricsListener() ? new DiffStats() : null;
+        Items rangeItems = items.copyOfRange(positionStart, positionStart + oldItemCount);
+        diffItems(
+                rangeItems,
+                new OffsetDiffHandler(wrap(adapterNotifyDiffHandler, recorder, stats), positionStart),
+                new OffsetCallback(callback, positionStart, newItemCount),
+                stats);
+        items.replace(positionStart, positionStart + oldItemCount, rangeItems);
+
+        // Resume adapter monitoring.
+        startObservingItems();
+
+        onDataSetPartiallyDiffed(recorder != null ? recorder.build(items.snapshot()) : null, stats);
+    }
+
+    public void addOnDiffResultListener(@NonNull OnDiffResultListener listener) {
+        onDiffResultListeners.add(listener);
+    }
+
+    public void removeOnDiffResultListener(@NonNull OnDiffResultListener listener) {
+        onDiffResultListeners.remove(listener);
+    }
+
+    boolean hasOnDiffResultListeners() {
+        return !onDiffResultListeners.isEmpty();
+    }
+
+    /**
+     * Sets the listener that receives {@link DiffStats} for every diff, if any. For range diffs, the item counts refer
+     * to the range.
+     */
+    public void setDiffMetricsListener(@Nullable DiffMetricsListener diffMetricsListener) {
+        this.diffMetricsListener = diffMetricsListener;
+    }
+
+    boolean hasDiffMetricsListener() {
+        return diffMetricsListener != null;
+    }
+
+    /**
+     * Sets the {@link StableIdRegistry} used to provide ids in {@link Callback#getItemId(int)}, if any.
+     * Keys no longer present in the data set are evicted from it after each diff of the whole data set.
+     */
+    public void setStableIdRegistry(StableIdRegistry stableIdRegistry) {
+        this.stableIdRegistry = stableIdRegistry;
+    }
+
+    /**
+     * Called after a diff is applied, when all ids of the new data set were looked up.
+     *
+     * @param result Result of the diff, if there were {@link OnDiffResultListener}s when it started.
+     * @param stats  Stats of the diff, if there was a {@link DiffMetricsListener} when it started.
+     */
+    void onDataSetDiffed(@Nullable DiffResult result, @Nullable DiffStats stats) {
+        if (stableIdRegistry != null) {
+            stableIdRegistry.evictUnused();
+        }
+        dispatchDiffResult(result);
+        dispatchDiffStats(stats);
+    }
+
+    /**
+     * Called after a diff is applied, when only part of the ids of the new data set were looked up, eg. for a range
+     * or a {@link DiffScript}. Unused stable ids can't be told apart from those not looked up, so none are evicted.
+     *
+     * @see #onDataSetDiffed(DiffResult, DiffStats)
+     */
+    void onDataSetPartiallyDiffed(@Nullable DiffResult result, @Nullable DiffStats stats) {
+        dispatchDiffResult(result);
+        dispatchDiffStats(stats);
+    }
+
+    private void dispatchDiffResult(@Nullable DiffResult result) {
+        if (result != null) {
+            for (int i = 0; i < onDiffResultListeners.size(); i++) {
+                onDiffResultListeners.get(i).onDiffResult(result);
             }
         }
-        if (changePosition != -1) {
-            diffHandler.onItemRangeChanged(changePosition, changeCount);
+    }
+
+    private void dispatchDiffStats(@Nullable DiffStats stats) {
+        if (stats != null && diffMetricsListener != null) {
+            diffMetricsListener.onDiffStats(stats);
         }
-        if (insertPosition != -1) {
-            diffHandler.onItemRangeInserted(insertPosition, insertCount);
+    }
+
+    /**
+     * Wraps {@code diffHandler} in {@code recorder} and a {@link DiffStats.Collector} for {@code stats}, if any.
+     */
+    static DiffHandler wrap(
+            DiffHandler diffHandler, @Nullable DiffResult.Recorder recorder, @Nullable DiffStats stats) {
+        if (recorder != null) {
+            diffHandler = recorder;
         }
+        if (stats != null) {
+            diffHandler = new DiffStats.Collector(diffHandler, stats);
+        }
+        return diffHandler;
+    }
+
+    /**
+     * Returns a snapshot of the current items, for diffing outside of the UI thread.
+     */
+    Items snapshotItems() {
+        return items.snapshot();
+    }
+
+    /**
+     * Returns the version of the current items, which changes whenever they are modified.
+     */
+    long getItemsVersion() {
+        return items.getVersion();
+    }
+
+    /**
+     * Replaces the current items with {@code newItems}, typically a snapshot that was diffed outside of the UI thread.
+     */
+    void setItems(Items newItems) {
+        items.set(newItems);
+    }
+
+    /**
+     * Diffs {@code items} against the data set provided by {@code callback}, updating {@code items} to match it.
+     *
+     * @param stats Stats to fill in with item counts, comparisons and timings, if any.
+     */
+    static void diffItems(Items items, DiffHandler diffHandler, Callback callback, @Nullable DiffStats stats) {
+        int oldItemCount = items.size();
+
+        // Prepare adapter items.
+        Trace.beginSection("DataSetDiffer#snapshot");
+        long snapshotStartTime = System.nanoTime();
+        Items adapterItems;
+        try {
+            adapterItems = Items.from(callback);
+        } finally {
+            Trace.endSection();
+        }
+        long diffStartTime = System.nanoTime();
+
+        // Diff them against the current items, only counting comparisons if there are stats to fill in.
+        if (stats != null) {
+            items.startCountingComparisons();
+            adapterItems.startCountingComparisons();
+        }
+        Trace.beginSection("DataSetDiffer#diff");
+        try {
+            ItemsDiffer.diff(items, adapterItems, diffHandler);
+        } finally {
+            Trace.endSection();
+        }
+
+        if (stats != null) {
+            stats.oldItemCount = oldItemCount;
+            stats.newItemCount = adapterItems.size();
+            stats.comparisonCount = items.stopCountingComparisons() + adapterItems.stopCountingComparisons();
+            stats.snapshotTimeNanos = diffStartTime - snapshotStartTime;
+            stats.diffTimeNanos = System.nanoTime() - diffStartTime;
+        }
+    }
+
+    /**
+     * Applies {@code script} to {@code items}, or diffs them against the data set provided by {@code callback} if it
+     * doesn't validate.
+     *
+     * @param stats Stats to fill in with item counts and timings, if any.
+     * @return true if the script was applied, false if the data sets were diffed instead.
+     */
+    static boolean applyDiffScript(
+            Items items, DiffScript script, DiffHandler diffHandler, Callback callback, @Nullable DiffStats stats) {
+        Trace.beginSection("DataSetDiffer#script");
+        long startTime = System.nanoTime();
+        boolean applied;
+        try {
+            applied = script.apply(items, callback, diffHandler);
+        } finally {
+            Trace.endSection();
+        }
+
+        if (applied) {
+            if (stats != null) {
+                stats.oldItemCount = script.getOldItemCount();
+                stats.newItemCount = script.getNewItemCount();
+                stats.diffTimeNanos = System.nanoTime() - startTime;
+                stats.scriptApplied = true;
+            }
+        } else {
+            diffItems(items, diffHandler, callback, stats);
+            if (stats != null) {
+                stats.scriptRejected = true;
+            }
+        }
+        return applied;
     }
 
     void startObservingItems() {
@@ -169,19 +296,97 @@ public class DataSetDiffer {
     }
 
     /**
-     * Callback for calculating the difference between the current data set and a new one.
+     * Diff handler that offsets all positions before forwarding them to another diff handler.
      */
-    public interface Callback {
-        int getItemCount();
+    private static class OffsetDiffHandler implements DiffHandler {
+        private final DiffHandler diffHandler;
+        private final int offset;
 
-        /**
-         * Return a unique id for this item, which is used to locate it in the data set.
-         */
-        long getItemId(int position);
+        OffsetDiffHandler(DiffHandler diffHandler, int offset) {
+            this.diffHandler = diffHandler;
+            this.offset = offset;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            diffHandler.onItemRangeChanged(positionStart + offset, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            diffHandler.onItemRangeInserted(positionStart + offset, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            diffHandler.onItemRangeRemoved(positionStart + offset, itemCount);
+        }
 
-        /**
-         * Return a content hash of this item, which is used to detect changes in it.
-         */
-        long getItemContentHash(int position);
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            diffHandler.onItemMoved(fromPosition + offset, toPosition + offset);
+        }
+    }
+
+    /**
+     * Callback that exposes a range of another callback's items, including their view types if it provides them.
+     */
+    private static class OffsetCallback implements Callback, ViewTypeDiffCallback {
+        private final Callback callback;
+        private final int offset;
+        private final int itemCount;
+
+        OffsetCallback(Callback callback, int offset, int itemCount) {
+            this.callback = callback;
+            this.offset = offset;
+            this.itemCount = itemCount;
+        }
+
+        @Override
+        public int getItemCount() {
+            return itemCount;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return callback.getItemId(position + offset);
+        }
+
+        @Override
+        public long getItemContentHash(int position) {
+            return callback.getItemContentHash(position + offset);
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            if (callback instanceof ViewTypeDiffCallback) {
+                return ((ViewTypeDiffCallback) callback).getItemViewType(position + offset);
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Listener for the metrics of each diff, invoked once the diff is applied.
+     */
+    public interface DiffMetricsListener {
+        void onDiffStats(@NonNull DiffStats stats);
+    }
+
+    /**
+     * Listener for the result of each diff, invoked once after all {@code notify*} calls were made.
+     */
+    public interface OnDiffResultListener {
+        void onDiffResult(@NonNull DiffResult result);
+    }
+
+    /**
+     * Callback for calculating the difference between the current data set and a new one.
+     *
+     * Implement {@link ViewTypeDiffCallback} as well to have items whose view type changed removed and inserted again,
+     * instead of changed.
+     */
+    public interface Callback extends DiffCallback {
     }
 }
@@ -0,0 +1,246 @@
+package io.doist.recyclerviewext.animations;
+
+import java.util.Arrays;
+
+import io.doist.recyclerviewext.diff.DiffHandler;
+import io.doist.recyclerviewext.diff.DiffOps;
+import io.doist.recyclerviewext.diff.Items;
+
+/**
+ * Outcome of a single diff, published once per diff to {@link DataSetDiffer.OnDiffResultListener}s after all
+ * {@code notify*} calls were made, so that listeners can update their own state in a single pass.
+ *
+ * Operations are listed in the order they were notified, and each operation's positions are relative to the data set
+ * after all previous operations. Diffs notify all removals first, but {@link io.doist.recyclerviewext.diff.DiffScript}s
+ * can interleave them with other operations.
+ */
+public final class DiffResult {
+    public static final int OP_REMOVE = DiffOps.OP_REMOVE;
+    public static final int OP_INSERT = DiffOps.OP_INSERT;
+    public static final int OP_CHANGE = DiffOps.OP_CHANGE;
+    public static final int OP_MOVE = DiffOps.OP_MOVE;
+
+    private final Items oldItems;
+    private final Items newItems;
+    private final DiffOps ops;
+
+    private long[] removedIds;
+
+    private DiffResult(Items oldItems, Items newItems, DiffOps ops) {
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+        this.ops = ops;
+    }
+
+    public int getOldItemCount() {
+        return oldItems.size();
+    }
+
+    public int getNewItemCount() {
+        return newItems.size();
+    }
+
+    public int getOpCount() {
+        return ops.getOpCount();
+    }
+
+    /**
+     * Returns the type of operation at {@code index}, one of {@link #OP_REMOVE}, {@link #OP_INSERT},
+     * {@link #OP_CHANGE} and {@link #OP_MOVE}.
+     */
+    public int getOpType(int index) {
+        return ops.getOpType(index);
+    }
+
+    /**
+     * Returns the start position of the operation at {@code index}, or the from position if it is a move.
+     */
+    public int getOpPosition(int index) {
+        return ops.getOpPosition(index);
+    }
+
+    /**
+     * Returns the item count of the operation at {@code index}, or the to position if it is a move.
+     */
+    public int getOpItemCountOrToPosition(int index) {
+        return ops.getOpItemCountOrToPosition(index);
+    }
+
+    /**
+     * Returns the ids of all items that are no longer in the data set. Items that were removed and inserted again in
+     * the same diff, eg. because their view type changed, are still in the data set and aren't included.
+     */
+    public long[] getRemovedIds() {
+        if (removedIds == null) {
+            removedIds = excludeReinsertedIds(hasLeadingRemovesOnly() ? getLeadingRemovedIds() : replayRemovedIds());
+        }
+        return removedIds;
+    }
+
+    /**
+     * Returns whether all removals come first and in ascending order, as when diffing.
+     */
+    private boolean hasLeadingRemovesOnly() {
+        int opCount = getOpCount();
+        int i = 0;
+        while (i < opCount && getOpType(i) == OP_REMOVE) {
+            if (i > 0 && getOpPosition(i) < getOpPosition(i - 1)) {
+                return false;
+            }
+            i++;
+        }
+        while (i < opCount && getOpType(i) != OP_REMOVE) {
+            i++;
+        }
+        return i == opCount;
+    }
+
+    private long[] getLeadingRemovedIds() {
+        int opCount = getOpCount();
+        int removedCount = 0;
+        for (int i = 0; i < opCount && getOpType(i) == OP_REMOVE; i++) {
+            removedCount += getOpItemCountOrToPosition(i);
+        }
+
+        // Removals are notified in ascending order, so positions are offset by the number of items removed before.
+        long[] removedIds = new long[removedCount];
+        int removedIndex = 0;
+        for (int i = 0; i < opCount && getOpType(i) == OP_REMOVE; i++) {
+            int oldPosition = getOpPosition(i) + removedIndex;
+            int itemCount = getOpItemCountOrToPosition(i);
+            for (int j = 0; j < itemCount; j++) {
+                removedIds[removedIndex++] = oldItems.getId(oldPosition + j);
+            }
+        }
+        return removedIds;
+    }
+
+    /**
+     * Replays all operations, tracking the old position of each item, to find the old items that were removed.
+     */
+    private long[] replayRemovedIds() {
+        int oldItemCount = oldItems.size();
+        int[] oldPositions = new int[Math.max(oldItemCount, newItems.size())];
+        for (int i = 0; i < oldItemCount; i++) {
+            oldPositions[i] = i;
+        }
+        int size = oldItemCount;
+        long[] removedIds = new long[oldItemCount];
+        int removedCount = 0;
+        for (int i = 0; i < getOpCount(); i++) {
+            int arg1 = getOpPosition(i);
+            int arg2 = getOpItemCountOrToPosition(i);
+            switch (getOpType(i)) {
+                case OP_REMOVE:
+                    for (int j = arg1; j < arg1 + arg2; j++) {
+                        if (oldPositions[j] != -1) {
+                            removedIds[removedCount++] = oldItems.getId(oldPositions[j]);
+                        }
+                    }
+                    System.arraycopy(oldPositions, arg1 + arg2, oldPositions, arg1, size - arg1 - arg2);
+                    size -= arg2;
+                    break;
+
+                case OP_INSERT:
+                    if (size + arg2 > oldPositions.length) {
+                        oldPositions = Arrays.copyOf(oldPositions, size + arg2);
+                    }
+                    System.arraycopy(oldPositions, arg1, oldPositions, arg1 + arg2, size - arg1);
+                    Arrays.fill(oldPositions, arg1, arg1 + arg2, -1);
+                    size += arg2;
+                    break;
+
+                case OP_MOVE:
+                    int oldPosition = oldPositions[arg1];
+                    if (arg1 < arg2) {
+                        System.arraycopy(oldPositions, arg1 + 1, oldPositions, arg1, arg2 - arg1);
+                    } else {
+                        System.arraycopy(oldPositions, arg2, oldPositions, arg2 + 1, arg1 - arg2);
+                    }
+                    oldPositions[arg2] = oldPosition;
+                    break;
+            }
+        }
+        return Arrays.copyOf(removedIds, removedCount);
+    }
+
+    /**
+     * Returns {@code removedIds} without those present in the new items, keeping their order.
+     */
+    private long[] excludeReinsertedIds(long[] removedIds) {
+        if (removedIds.length == 0) {
+            return removedIds;
+        }
+        long[] sortedIds = removedIds.clone();
+        Arrays.sort(sortedIds);
+        boolean[] reinserted = new boolean[sortedIds.length];
+        int reinsertedCount = 0;
+        for (int i = 0; i < newItems.size(); i++) {
+            int index = Arrays.binarySearch(sortedIds, newItems.getId(i));
+            if (index >= 0 && !reinserted[index]) {
+                reinserted[index] = true;
+                reinsertedCount++;
+            }
+        }
+        if (reinsertedCount == 0) {
+            return removedIds;
+        }
+        long[] netRemovedIds = new long[removedIds.length - reinsertedCount];
+        int netRemovedCount = 0;
+        for (long id : removedIds) {
+            if (!reinserted[Arrays.binarySearch(sortedIds, id)]) {
+                netRemovedIds[netRemovedCount++] = id;
+            }
+        }
+        return netRemovedIds;
+    }
+
+    /**
+     * Diff handler that records all operations to build a {@link DiffResult}, forwarding them to another diff handler.
+     */
+    static class Recorder implements DiffHandler {
+        private final DiffHandler diffHandler;
+        private final Items oldItems;
+        private final DiffOps ops = new DiffOps();
+
+        /**
+         * @param diffHandler Diff handler to forward all operations to.
+         * @param oldItems    Items before the diff. They must not be modified afterwards, so pass in a snapshot.
+         */
+        Recorder(DiffHandler diffHandler, Items oldItems) {
+            this.diffHandler = diffHandler;
+            this.oldItems = oldItems;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            ops.onItemRangeChanged(positionStart, itemCount);
+            diffHandler.onItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            ops.onItemRangeInserted(positionStart, itemCount);
+            diffHandler.onItemRangeInserted(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            ops.onItemRangeRemoved(positionStart, itemCount);
+            diffHandler.onItemRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            ops.onItemMoved(fromPosition, toPosition);
+            diffHandler.onItemMoved(fromPosition, toPosition);
+        }
+
+        /**
+         * @param newItems Items after the diff. They must not be modified afterwards, so pass in a snapshot.
+         */
+        DiffResult build(Items newItems) {
+            return new DiffResult(oldItems, newItems, ops);
+        }
+    }
+}
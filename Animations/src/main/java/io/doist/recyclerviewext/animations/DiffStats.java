@@ -0,0 +1,172 @@
+package io.doist.recyclerviewext.animations;
+
+import androidx.annotation.NonNull;
+import io.doist.recyclerviewext.diff.DiffHandler;
+import io.doist.recyclerviewext.diff.DiffScript;
+
+/**
+ * Metrics of a single diff, delivered to {@link DataSetDiffer.DiffMetricsListener} once the diff is applied.
+ *
+ * All durations are in nanoseconds. For synchronous diffs, {@code notify*} calls are made while diffing, so the apply
+ * time is included in the diff time and the queue delay is always 0.
+ */
+public final class DiffStats {
+    int oldItemCount;
+    int newItemCount;
+    int removedCount;
+    int insertedCount;
+    int movedCount;
+    int changedCount;
+    long comparisonCount;
+    long snapshotTimeNanos;
+    long diffTimeNanos;
+    long applyTimeNanos;
+    long queueDelayNanos;
+    boolean scriptApplied;
+    boolean scriptRejected;
+
+    DiffStats() {
+    }
+
+    public int getOldItemCount() {
+        return oldItemCount;
+    }
+
+    public int getNewItemCount() {
+        return newItemCount;
+    }
+
+    /**
+     * Returns the number of items removed.
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Returns the number of items inserted.
+     */
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    /**
+     * Returns the number of items moved.
+     */
+    public int getMovedCount() {
+        return movedCount;
+    }
+
+    /**
+     * Returns the number of items changed.
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Returns the number of id comparisons performed while locating items.
+     */
+    public long getComparisonCount() {
+        return comparisonCount;
+    }
+
+    /**
+     * Returns the time spent reading the new data set from the callback.
+     */
+    public long getSnapshotTimeNanos() {
+        return snapshotTimeNanos;
+    }
+
+    /**
+     * Returns the time spent calculating the differences.
+     */
+    public long getDiffTimeNanos() {
+        return diffTimeNanos;
+    }
+
+    /**
+     * Returns the time spent in the UI thread submitting the new data set and notifying the adapter.
+     */
+    public long getApplyTimeNanos() {
+        return applyTimeNanos;
+    }
+
+    /**
+     * Returns the time between requesting an asynchronous diff and it starting in the background.
+     */
+    public long getQueueDelayNanos() {
+        return queueDelayNanos;
+    }
+
+    /**
+     * Returns whether a precomputed {@link DiffScript} was applied instead of diffing.
+     */
+    public boolean isScriptApplied() {
+        return scriptApplied;
+    }
+
+    /**
+     * Returns whether a precomputed {@link DiffScript} didn't validate, so the data sets were diffed instead.
+     */
+    public boolean isScriptRejected() {
+        return scriptRejected;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "DiffStats{" +
+                "oldItemCount=" + oldItemCount +
+                ", newItemCount=" + newItemCount +
+                ", removedCount=" + removedCount +
+                ", insertedCount=" + insertedCount +
+                ", movedCount=" + movedCount +
+                ", changedCount=" + changedCount +
+                ", comparisonCount=" + comparisonCount +
+                ", snapshotTimeNanos=" + snapshotTimeNanos +
+                ", diffTimeNanos=" + diffTimeNanos +
+                ", applyTimeNanos=" + applyTimeNanos +
+                ", queueDelayNanos=" + queueDelayNanos +
+                ", scriptApplied=" + scriptApplied +
+                ", scriptRejected=" + scriptRejected +
+                '}';
+    }
+
+    /**
+     * Diff handler that counts all operations into a {@link DiffStats}, forwarding them to another diff handler.
+     */
+    static class Collector implements DiffHandler {
+        private final DiffHandler diffHandler;
+        private final DiffStats stats;
+
+        Collector(DiffHandler diffHandler, DiffStats stats) {
+            this.diffHandler = diffHandler;
+            this.stats = stats;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            stats.changedCount += itemCount;
+            diffHandler.onItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            stats.insertedCount += itemCount;
+            diffHandler.onItemRangeInserted(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            stats.removedCount += itemCount;
+            diffHandler.onItemRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            stats.movedCount++;
+            diffHandler.onItemMoved(fromPosition, toPosition);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package io.doist.recyclerviewext.animations;
 
 import androidx.recyclerview.widget.RecyclerView;
+import io.doist.recyclerviewext.diff.Items;
+import io.doist.recyclerviewext.diff.ViewTypeDiffCallback;
 
 /**
  * Keeps track of animation ids and change ids so that calculating operations between two lists (old and new) is
@@ -9,10 +11,12 @@ import androidx.recyclerview.widget.RecyclerView;
 class ItemsObserver extends RecyclerView.AdapterDataObserver {
     private final Items items;
     private final DataSetDiffer.Callback callback;
+    private final ViewTypeDiffCallback viewTypeCallback;
 
     public ItemsObserver(Items items, DataSetDiffer.Callback callback) {
         this.items = items;
         this.callback = callback;
+        this.viewTypeCallback = callback instanceof ViewTypeDiffCallback ? (ViewTypeDiffCallback) callback : null;
     }
 
     @Override
@@ -21,7 +25,7 @@ class ItemsObserver extends RecyclerView.AdapterDataObserver {
         items.clear();
         items.ensureCapacity(itemCount);
         for (int i = 0; i < itemCount; i++) {
-            items.add(callback.getItemId(i), callback.getItemContentHash(i));
+            items.add(i, callback.getItemId(i), callback.getItemContentHash(i), getItemViewType(i));
         }
     }
 
@@ -34,6 +38,7 @@ class ItemsObserver extends RecyclerView.AdapterDataObserver {
 
         for (int i = positionStart; i < positionStart + itemCount; i++) {
             items.setContentHash(i, callback.getItemContentHash(i));
+            items.setViewType(i, getItemViewType(i));
         }
     }
 
@@ -41,7 +46,7 @@ class ItemsObserver extends RecyclerView.AdapterDataObserver {
     public void onItemRangeInserted(int positionStart, int itemCount) {
         items.ensureCapacity(items.size() + itemCount);
         for (int i = positionStart; i < positionStart + itemCount; i++) {
-            items.add(i, callback.getItemId(i), callback.getItemContentHash(i));
+            items.add(i, callback.getItemId(i), callback.getItemContentHash(i), getItemViewType(i));
         }
     }
 
@@ -56,12 +61,17 @@ class ItemsObserver extends RecyclerView.AdapterDataObserver {
         for (int i = 0; i < itemCount; i++) {
             long id = items.getId(fromPosition);
             long changeHash = items.getContentHash(fromPosition);
+            int viewType = items.getViewType(fromPosition);
             items.remove(fromPosition);
-            items.add(toPosition, id, changeHash);
+            items.add(toPosition, id, changeHash, viewType);
             if (incrementPositions) {
                 fromPosition++;
                 toPosition++;
             }
         }
     }
+
+    private int getItemViewType(int position) {
+        return viewTypeCallback != null ? viewTypeCallback.getItemViewType(position) : 0;
+    }
 }
@@ -1,17 +1,22 @@
 package io.doist.recyclerviewext.animations;
 
-import android.os.AsyncTask;
 import androidx.annotation.NonNull;
 
 import java.util.concurrent.Executor;
 
 /**
- * Executor that only keeps track of the latest task, reusing {@link AsyncTask#THREAD_POOL_EXECUTOR} internally.
+ * Executor that only keeps track of the latest task, running tasks one at a time in the supplied executor.
  */
-class LatestTaskAsyncTaskExecutor implements Executor {
+class LatestTaskExecutor implements Executor {
+    private final Executor executor;
+
     private Runnable next;
     private Runnable active;
 
+    LatestTaskExecutor(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
     public synchronized void execute(@NonNull final Runnable r) {
         next = new Runnable() {
             public void run() {
@@ -31,8 +36,7 @@ class LatestTaskAsyncTaskExecutor implements Executor {
         active = next;
         next = null;
         if (active != null) {
-            AsyncTask.THREAD_POOL_EXECUTOR.execute(active);
+            executor.execute(active);
         }
     }
 }
-
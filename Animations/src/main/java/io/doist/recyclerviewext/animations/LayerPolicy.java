@@ -0,0 +1,58 @@
+package io.doist.recyclerviewext.animations;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Decides which item animations of {@link WithLayerItemAnimator} run in a hardware layer.
+ *
+ * @see AdaptiveLayerPolicy
+ */
+public interface LayerPolicy {
+    int ANIMATION_REMOVE = 0;
+    int ANIMATION_MOVE = 1;
+    int ANIMATION_CHANGE = 2;
+    int ANIMATION_ADD = 3;
+
+    /**
+     * Runs all animations in a hardware layer.
+     */
+    LayerPolicy ALWAYS = new LayerPolicy() {
+        @Override
+        public boolean shouldUseLayer(RecyclerView.ViewHolder holder, int animation) {
+            return true;
+        }
+
+        @Override
+        public void onLayerReleased(RecyclerView.ViewHolder holder, int animation) {
+        }
+    };
+
+    /**
+     * Never uses hardware layers.
+     */
+    LayerPolicy NEVER = new LayerPolicy() {
+        @Override
+        public boolean shouldUseLayer(RecyclerView.ViewHolder holder, int animation) {
+            return false;
+        }
+
+        @Override
+        public void onLayerReleased(RecyclerView.ViewHolder holder, int animation) {
+        }
+    };
+
+    /**
+     * Returns whether {@code animation} of {@code holder} should run in a hardware layer. Called right before the
+     * animation starts.
+     *
+     * @param animation one of {@link #ANIMATION_REMOVE}, {@link #ANIMATION_MOVE}, {@link #ANIMATION_CHANGE} or
+     *                  {@link #ANIMATION_ADD}.
+     */
+    boolean shouldUseLayer(RecyclerView.ViewHolder holder, int animation);
+
+    /**
+     * Called when an animation for which {@link #shouldUseLayer(RecyclerView.ViewHolder, int)} returned true ends,
+     * either normally or because it was cancelled.
+     */
+    void onLayerReleased(RecyclerView.ViewHolder holder, int animation);
+}
@@ -0,0 +1,146 @@
+package io.doist.recyclerviewext.animations;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interns string keys (eg. UUIDs) into unique 64-bit ids, suitable for {@link DataSetDiffer.Callback#getItemId(int)}.
+ *
+ * Keys are stored in an open-addressing table backed by primitive arrays, so looking up an existing key never
+ * allocates. Ids are never reused: once a key is evicted, it gets a new id if it's ever looked up again.
+ *
+ * Keys that are no longer in the data set are evicted by {@link #evictUnused()}, which is called automatically after
+ * each diff of the whole data set when the registry is set via
+ * {@link DataSetDiffer#setStableIdRegistry(StableIdRegistry)}. Since those diffs look up the ids of all items, keys not
+ * looked up since the previous eviction are no longer present. Range diffs and applied {@code DiffScript}s only look
+ * up some ids, so they don't evict anything.
+ *
+ * All methods are thread-safe, as ids can be looked up from the background thread used by {@link AsyncDataSetDiffer}.
+ */
+public final class StableIdRegistry {
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private long[] ids;
+    private int[] generations;
+    private int size;
+
+    private int generation;
+    private long nextId;
+
+    public StableIdRegistry() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize Number of keys expected, used to size the table to avoid resizing.
+     */
+    public StableIdRegistry(int expectedSize) {
+        allocate(getCapacity(expectedSize));
+    }
+
+    /**
+     * Returns the id for {@code key}, creating a new one if needed.
+     */
+    public synchronized long getId(@NonNull String key) {
+        int mask = keys.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                generations[index] = generation;
+                return ids[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        // Not found, create a new id.
+        long id = nextId++;
+        keys[index] = key;
+        ids[index] = id;
+        generations[index] = generation;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            rehash(getCapacity(size), false);
+        }
+        return id;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Evicts all keys that were not looked up since the previous call to this method.
+     */
+    public synchronized void evictUnused() {
+        int used = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && generations[i] == generation) {
+                used++;
+            }
+        }
+        if (used < size) {
+            size = used;
+            rehash(getCapacity(used), true);
+        }
+        generation++;
+    }
+
+    /**
+     * Evicts all keys.
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Reinserts all keys into a table of size {@code capacity}, except those not looked up in the current generation
+     * if {@code evictUnused} is set.
+     */
+    private void rehash(int capacity, boolean evictUnused) {
+        String[] oldKeys = keys;
+        long[] oldIds = ids;
+        int[] oldGenerations = generations;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            String key = oldKeys[i];
+            if (key != null && (!evictUnused || oldGenerations[i] == generation)) {
+                int index = mix(key.hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                ids[index] = oldIds[i];
+                generations[index] = oldGenerations[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        ids = new long[capacity];
+        generations = new int[capacity];
+    }
+
+    /**
+     * Returns a power of two capacity that keeps the load factor for {@code size} keys at or under 50%.
+     */
+    private static int getCapacity(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of {@code hash}, as {@link String#hashCode()} is weak in the lower bits.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,391 @@
+package io.doist.recyclerviewext.animations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.UiThread;
+import androidx.recyclerview.widget.RecyclerView;
+import io.doist.recyclerviewext.diff.DiffHandler;
+import io.doist.recyclerviewext.diff.Items;
+
+/**
+ * Adds functionality to animate differences between an adapter's data set and a new one, for data sets that are
+ * flattened trees (eg. expandable lists).
+ *
+ * Unlike {@link DataSetDiffer}, the differences are calculated per parent, comparing each child list on its own.
+ * Whole subtrees that are inserted or removed are notified as a single range, and {@link #diffChildren(long)} allows
+ * diffing a single subtree (eg. after expanding or collapsing a node) without looking at the rest of the data set.
+ *
+ * @see DataSetDiffer
+ */
+public class TreeDataSetDiffer {
+    /**
+     * Parent id of the top level items. Reserved, so no item can have it as its id.
+     */
+    public static final long ROOT_ID = RecyclerView.NO_ID;
+
+    private final RecyclerView.Adapter adapter;
+    private final Callback callback;
+
+    private final Node root = new Node(ROOT_ID, 0, null);
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final TreeObserver treeObserver = new TreeObserver();
+
+    private final AdapterNotifyDiffHandler adapterNotifyDiffHandler;
+
+    /**
+     * @param adapter  Adapter with which this data set differ is associated.
+     * @param callback Callback that provides information about the tree set in the adapter.
+     */
+    public TreeDataSetDiffer(RecyclerView.Adapter adapter, Callback callback) {
+        if (!adapter.hasStableIds()) {
+            adapter.setHasStableIds(true);
+        }
+        this.adapter = adapter;
+        this.callback = callback;
+        this.adapterNotifyDiffHandler = new AdapterNotifyDiffHandler(adapter);
+        buildChildren(root);
+        startObservingItems();
+    }
+
+    /**
+     * Analyzes the whole tree using the supplied {@link Callback} and triggers all necessary {@code notify*} calls.
+     */
+    @UiThread
+    public void diffDataSet() {
+        diffChildren(ROOT_ID);
+    }
+
+    /**
+     * Analyzes the subtree under {@code parentId} using the supplied {@link Callback} and triggers all necessary
+     * {@code notify*} calls. The rest of the tree is assumed unchanged and is never looked at.
+     *
+     * This is typically called after expanding or collapsing the node {@code parentId}.
+     */
+    @UiThread
+    public void diffChildren(long parentId) {
+        Node parent = parentId == ROOT_ID ? root : nodes.get(parentId);
+        if (parent == null) {
+            throw new IllegalArgumentException("Unknown parent id: " + parentId);
+        }
+
+        // Pause adapter monitoring to avoid double counting changes.
+        stopObservingItems();
+
+        // Diff children using the default diff handler, and propagate the size delta to all ancestors.
+        int oldSize = parent.size;
+        diffChildren(adapterNotifyDiffHandler, parent, getChildrenPosition(parent));
+        int sizeDelta = parent.size - oldSize;
+        for (Node ancestor = parent.parent; ancestor != null && sizeDelta != 0; ancestor = ancestor.parent) {
+            ancestor.size += sizeDelta;
+        }
+
+        // Resume adapter monitoring.
+        startObservingItems();
+    }
+
+    /**
+     * Diffs the children of {@code parent}, whose first child is at {@code childrenPosition} in the flattened data set,
+     * updating {@code parent}'s subtree and size.
+     */
+    private void diffChildren(DiffHandler diffHandler, Node parent, int childrenPosition) {
+        // Prepare adapter children.
+        int childCount = callback.getChildCount(parent.id);
+        Items adapterChildren = new Items(childCount);
+        for (int i = 0; i < childCount; i++) {
+            adapterChildren.add(getChildId(parent, i), callback.getChildContentHash(parent.id, i));
+        }
+
+        List<Node> children = parent.children;
+        Items childIds = new Items(Math.max(children.size(), childCount));
+
+        // Remove all missing subtrees up front to make positions more predictable in the second loop.
+        int position = childrenPosition;
+        int removePosition = -1;
+        int removeCount = 0;
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            // Check if the child was removed.
+            if (adapterChildren.indexOfId(child.id, i) == -1) {
+                children.remove(i);
+                unregister(child);
+
+                if (removePosition == -1) {
+                    removePosition = position;
+                    removeCount = child.size;
+                } else {
+                    removeCount += child.size;
+                }
+
+                i--;
+            } else {
+                // Commit pending remove since the current is still there.
+                if (removePosition != -1) {
+                    diffHandler.onItemRangeRemoved(removePosition, removeCount);
+                    removePosition = -1;
+                }
+                childIds.add(child.id, 0);
+                position += child.size;
+            }
+        }
+        if (removePosition != -1) {
+            diffHandler.onItemRangeRemoved(removePosition, removeCount);
+        }
+
+        // Add, change or move subtrees based on their id, recursing into the ones that were kept.
+        position = childrenPosition;
+        int insertPosition = -1;
+        int insertCount = 0;
+        int changePosition = -1;
+        int changeCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            long id = adapterChildren.getId(i);
+            long contentHash = adapterChildren.getContentHash(i);
+            int oldIndex = childIds.indexOfId(id, i);
+            if (oldIndex != -1) {
+                // Child was in the previous data set, it can have moved and / or changed.
+
+                // Commit pending insert since the current wasn't inserted and it'd conflict with the move / change.
+                if (insertPosition != -1) {
+                    diffHandler.onItemRangeInserted(insertPosition, insertCount);
+                    insertPosition = -1;
+                }
+
+                Node child = children.get(oldIndex);
+
+                // Check if the child was moved, moving its whole subtree item by item.
+                if (oldIndex != i) {
+                    // Commit pending change to avoid conflicts with the moves added below.
+                    if (changePosition != -1) {
+                        diffHandler.onItemRangeChanged(changePosition, changeCount);
+                        changePosition = -1;
+                    }
+
+                    int fromPosition = position;
+                    for (int j = i; j < oldIndex; j++) {
+                        fromPosition += children.get(j).size;
+                    }
+                    for (int j = 0; j < child.size; j++) {
+                        diffHandler.onItemMoved(fromPosition + j, position + j);
+                    }
+
+                    children.remove(oldIndex);
+                    children.add(i, child);
+                    childIds.remove(oldIndex);
+                    childIds.add(i, id, 0);
+                }
+
+                // Check if the child was changed. Ranges only span siblings that are adjacent in the data set.
+                if (child.contentHash != contentHash) {
+                    child.contentHash = contentHash;
+
+                    if (changePosition != -1 && changePosition + changeCount != position) {
+                        diffHandler.onItemRangeChanged(changePosition, changeCount);
+                        changePosition = -1;
+                    }
+                    if (changePosition == -1) {
+                        changePosition = position;
+                        changeCount = 1;
+                    } else {
+                        changeCount++;
+                    }
+                } else {
+                    // Commit pending change since the current didn't change.
+                    if (changePosition != -1) {
+                        diffHandler.onItemRangeChanged(changePosition, changeCount);
+                        changePosition = -1;
+                    }
+                }
+
+                // Diff the child's own children. Pending changes can be safely committed later, as the operations in
+                // the subtree happen after them and never shift their positions.
+                diffChildren(diffHandler, child, position + 1);
+                position += child.size;
+            } else {
+                // Child was not in the previous data set, it was added along with its whole subtree.
+
+                // Commit pending change now to avoid conflicts with the insert added below.
+                if (changePosition != -1) {
+                    diffHandler.onItemRangeChanged(changePosition, changeCount);
+                    changePosition = -1;
+                }
+
+                Node child = new Node(id, contentHash, parent);
+                register(child);
+                buildChildren(child);
+                children.add(i, child);
+                childIds.add(i, id, 0);
+
+                if (insertPosition == -1) {
+                    insertPosition = position;
+                    insertCount = child.size;
+                } else {
+                    insertCount += child.size;
+                }
+                position += child.size;
+            }
+        }
+        if (changePosition != -1) {
+            diffHandler.onItemRangeChanged(changePosition, changeCount);
+        }
+        if (insertPosition != -1) {
+            diffHandler.onItemRangeInserted(insertPosition, insertCount);
+        }
+
+        parent.size = (parent == root ? 0 : 1) + position - childrenPosition;
+    }
+
+    /**
+     * Returns the position of the first child of {@code node} in the flattened data set.
+     */
+    private int getChildrenPosition(Node node) {
+        if (node == root) {
+            return 0;
+        }
+        int position = getChildrenPosition(node.parent);
+        List<Node> siblings = node.parent.children;
+        for (int i = 0; i < siblings.size(); i++) {
+            Node sibling = siblings.get(i);
+            if (sibling == node) {
+                break;
+            }
+            position += sibling.size;
+        }
+        return position + 1;
+    }
+
+    /**
+     * Returns the id of the child of {@code parent} at {@code index}, which can't be {@link #ROOT_ID}, as the child
+     * would be mistaken for the root.
+     */
+    private long getChildId(Node parent, int index) {
+        long id = callback.getChildId(parent.id, index);
+        if (id == ROOT_ID) {
+            throw new IllegalArgumentException(
+                    "Child " + index + " of " + parent.id + " has the reserved id ROOT_ID (" + ROOT_ID + ")");
+        }
+        return id;
+    }
+
+    /**
+     * Builds the subtree under {@code parent} from scratch, using the supplied {@link Callback}.
+     */
+    private void buildChildren(Node parent) {
+        int childCount = callback.getChildCount(parent.id);
+        parent.children.ensureCapacity(childCount);
+        int size = parent == root ? 0 : 1;
+        for (int i = 0; i < childCount; i++) {
+            Node child = new Node(
+                    getChildId(parent, i), callback.getChildContentHash(parent.id, i), parent);
+            register(child);
+            buildChildren(child);
+            parent.children.add(child);
+            size += child.size;
+        }
+        parent.size = size;
+    }
+
+    private void register(Node node) {
+        nodes.put(node.id, node);
+    }
+
+    private void unregister(Node node) {
+        // The id might have been reused elsewhere in the tree already, if the node moved to a different parent.
+        if (nodes.get(node.id) == node) {
+            nodes.remove(node.id);
+        }
+        for (int i = 0; i < node.children.size(); i++) {
+            unregister(node.children.get(i));
+        }
+    }
+
+    void startObservingItems() {
+        adapter.registerAdapterDataObserver(treeObserver);
+    }
+
+    void stopObservingItems() {
+        adapter.unregisterAdapterDataObserver(treeObserver);
+    }
+
+    /**
+     * Callback for calculating the difference between the current tree and a new one.
+     *
+     * Only visible children should be reported, ie. collapsed nodes have no children.
+     */
+    public interface Callback {
+        /**
+         * Return the number of visible children of the item {@code parentId}, or of the top level if it is
+         * {@link #ROOT_ID}.
+         */
+        int getChildCount(long parentId);
+
+        /**
+         * Return a unique id for this child, which is used to locate it in the data set. It must not be
+         * {@link #ROOT_ID}.
+         */
+        long getChildId(long parentId, int index);
+
+        /**
+         * Return a content hash of this child, which is used to detect changes in it.
+         */
+        long getChildContentHash(long parentId, int index);
+    }
+
+    private static class Node {
+        final long id;
+        long contentHash;
+        final Node parent;
+        final ArrayList<Node> children = new ArrayList<>(0);
+        // Number of items in the flattened subtree, including this one.
+        int size = 1;
+
+        Node(long id, long contentHash, Node parent) {
+            this.id = id;
+            this.contentHash = contentHash;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Rebuilds the tree whenever the adapter is notified outside of this class, as positional changes can't be
+     * reliably mapped to the tree structure.
+     */
+    private class TreeObserver extends RecyclerView.AdapterDataObserver {
+        @Override
+        public void onChanged() {
+            rebuild();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            if (payload != null) {
+                // It's uncertain if all specific changes were handled. Better to bind twice than not bind at all.
+                return;
+            }
+            rebuild();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            rebuild();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            rebuild();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            rebuild();
+        }
+
+        private void rebuild() {
+            root.children.clear();
+            nodes.clear();
+            buildChildren(root);
+        }
+    }
+}
@@ -4,23 +4,50 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
 import android.view.View;
+import android.view.ViewParent;
 import android.view.ViewPropertyAnimator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.RecyclerView.ViewHolder;
 import androidx.recyclerview.widget.SimpleItemAnimator;
+import androidx.tracing.Trace;
 
 /**
  * Clone of {@link androidx.recyclerview.widget.DefaultItemAnimator}, with the following differences:
  * <ul>
- * <li>All animations run in a hardware layer (via {@link ViewPropertyAnimator#withLayer()}) which makes them smoother;
+ * <li>All animations run in a hardware layer (via {@link ViewPropertyAnimator#withLayer()}) which makes them smoother,
+ * unless a different {@link LayerPolicy} is set (see {@link #setLayerPolicy(LayerPolicy)});
  * <li>Added constructor parameter which sets {@link #setSupportsChangeAnimations(boolean)} automatically;
  * <li>All compat code removed;
- * <li>All debug code removed.
+ * <li>All debug code removed;
+ * <li>Move and change records, and the batches of pending animations, are pooled and reused, so that running
+ * animations doesn't allocate beyond what {@link ViewPropertyAnimator} needs;
+ * <li>Optional animation budget (see {@link #setMaxAnimationCount(int)} and {@link #setMaxLayerArea(long)}), past which
+ * the least visible holders jump to their end state instead of animating;
+ * <li>Animations are indexed by holder, so that ending or looking up the animation of a holder is O(1) regardless of
+ * how many are pending or running;
+ * <li>Optional frame metrics for each window of animations (see
+ * {@link #setAnimationMetricsListener(AnimationMetricsListener)});
+ * <li>Optional timing adapted to the number of holders animated at once (see
+ * {@link #setTimingPolicy(BatchTimingPolicy)});
+ * <li>Optional in-place change animations, which reuse the holder and cross-fade from a snapshot of its old content
+ * (see {@link #setInPlaceChangeAnimationsEnabled(boolean)});
+ * <li>Optional culling of animations the user can't see (see {@link #setViewportCullingEnabled(boolean)}).
  * </ul>
  *
  * @see androidx.recyclerview.widget.DefaultItemAnimator
@@ -28,52 +55,82 @@ import androidx.recyclerview.widget.SimpleItemAnimator;
 public class WithLayerItemAnimator extends SimpleItemAnimator {
     private static TimeInterpolator sDefaultInterpolator;
 
+    // Kinds of animations, as stored in each holder's AnimationInfo and packed in budget keys.
+    private static final int KIND_REMOVE = 0;
+    private static final int KIND_MOVE = 1;
+    private static final int KIND_CHANGE_OLD = 2;
+    private static final int KIND_CHANGE_NEW = 3;
+    private static final int KIND_ADD = 4;
+    private static final int KIND_SHIFT = 28;
+    private static final int INDEX_MASK = (1 << KIND_SHIFT) - 1;
+
+    // Maximum number of snapshot bitmaps kept around for the following in-place changes.
+    private static final int MAX_SNAPSHOT_POOL_SIZE = 8;
+
+    // States of animations, from being scheduled until they start.
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_BATCHED = 1;
+    private static final int STATE_RUNNING = 2;
+
+    // Ended animations are replaced with null (or have their holders set to null) in these lists, and are removed
+    // when the lists are next processed, so that ending an animation never needs to look for it.
     private final ArrayList<ViewHolder> mPendingRemovals = new ArrayList<>();
     private final ArrayList<ViewHolder> mPendingAdditions = new ArrayList<>();
     private final ArrayList<MoveInfo> mPendingMoves = new ArrayList<>();
     private final ArrayList<ChangeInfo> mPendingChanges = new ArrayList<>();
 
-    private final ArrayList<ArrayList<ViewHolder>> mAdditionsList = new ArrayList<>();
-    private final ArrayList<ArrayList<MoveInfo>> mMovesList = new ArrayList<>();
-    private final ArrayList<ArrayList<ChangeInfo>> mChangesList = new ArrayList<>();
+    // Animation state of every holder that is pending, batched or running.
+    private final IdentityHashMap<ViewHolder, AnimationInfo> mAnimationInfos = new IdentityHashMap<>();
+    private final ArrayList<AnimationInfo> mEndingAnimationInfos = new ArrayList<>();
+    private long mLayerArea;
 
-    private final ArrayList<ViewHolder> mAddAnimations = new ArrayList<>();
-    private final ArrayList<ViewHolder> mMoveAnimations = new ArrayList<>();
-    private final ArrayList<ViewHolder> mRemoveAnimations = new ArrayList<>();
-    private final ArrayList<ViewHolder> mChangeAnimations = new ArrayList<>();
+    // Pools of records and batches no longer in use.
+    private final ArrayList<AnimationInfo> mAnimationInfoPool = new ArrayList<>();
+    private final ArrayList<MoveInfo> mMoveInfoPool = new ArrayList<>();
+    private final ArrayList<ChangeInfo> mChangeInfoPool = new ArrayList<>();
+    private final ArrayList<AdditionsBatch> mAdditionsBatchPool = new ArrayList<>();
+    private final ArrayList<MovesBatch> mMovesBatchPool = new ArrayList<>();
+    private final ArrayList<ChangesBatch> mChangesBatchPool = new ArrayList<>();
+    private final ArrayList<Bitmap> mSnapshotPool = new ArrayList<>();
+    private Canvas mSnapshotCanvas;
 
-    private static class MoveInfo {
-        public final ViewHolder holder;
-        public final int fromX;
-        public final int fromY;
-        public final int toX;
-        public final int toY;
+    private LayerPolicy mLayerPolicy = LayerPolicy.ALWAYS;
+    private AnimationFrameMonitor mFrameMonitor;
+    private BatchTimingPolicy mTimingPolicy;
+    private boolean mInPlaceChangeAnimationsEnabled;
+    private boolean mViewportCullingEnabled;
+    private final Rect mVisibleBounds = new Rect();
+    private int mMaxAnimationCount = Integer.MAX_VALUE;
+    private long mMaxLayerArea = Long.MAX_VALUE;
+    // Reusable keys for sorting pending animations by visible area, as [visible area, kind, index].
+    private long[] mBudgetKeys = new long[0];
 
-        private MoveInfo(ViewHolder holder, int fromX, int fromY, int toX, int toY) {
-            this.holder = holder;
-            this.fromX = fromX;
-            this.fromY = fromY;
-            this.toX = toX;
-            this.toY = toY;
-        }
+    private static class AnimationInfo {
+        public ViewHolder holder;
+        public int kind;
+        public int state;
+        public long layerArea;
+        // Where the animation is while pending or batched: the move or change info, or the list and index of the
+        // removal or addition.
+        public MoveInfo moveInfo;
+        public ChangeInfo changeInfo;
+        public ArrayList<ViewHolder> list;
+        public int index;
+    }
+
+    private static class MoveInfo {
+        public ViewHolder holder;
+        public int fromX;
+        public int fromY;
+        public int toX;
+        public int toY;
     }
 
     private static class ChangeInfo {
         public ViewHolder oldHolder, newHolder;
         public int fromX, fromY, toX, toY;
-        private ChangeInfo(ViewHolder oldHolder, ViewHolder newHolder) {
-            this.oldHolder = oldHolder;
-            this.newHolder = newHolder;
-        }
-
-        private ChangeInfo(ViewHolder oldHolder, ViewHolder newHolder,
-                           int fromX, int fromY, int toX, int toY) {
-            this(oldHolder, newHolder);
-            this.fromX = fromX;
-            this.fromY = fromY;
-            this.toX = toX;
-            this.toY = toY;
-        }
+        // Old content of in-place changes, which only have an old holder, also holding the new content.
+        public Bitmap snapshot;
 
         @NonNull
         @Override
@@ -89,6 +146,13 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
         }
     }
 
+    /**
+     * Holder info that keeps a snapshot of the holder's content before it is rebound, for in-place changes.
+     */
+    private static class SnapshotHolderInfo extends ItemHolderInfo {
+        public Bitmap snapshot;
+    }
+
     public WithLayerItemAnimator() {
         super();
     }
@@ -97,106 +161,611 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
         setSupportsChangeAnimations(supportsChangeAnimations);
     }
 
+    @NonNull
+    public LayerPolicy getLayerPolicy() {
+        return mLayerPolicy;
+    }
+
+    /**
+     * Sets the policy deciding which animations run in a hardware layer ({@link LayerPolicy#ALWAYS} by default).
+     * Running animations keep releasing their layers to the policy that granted them.
+     *
+     * @see AdaptiveLayerPolicy
+     */
+    public void setLayerPolicy(@NonNull LayerPolicy layerPolicy) {
+        mLayerPolicy = layerPolicy;
+    }
+
+    /**
+     * Sets the policy adapting durations and delays to the number of holders animated at once, if any. Without one,
+     * the durations set in this animator are always used.
+     */
+    public void setTimingPolicy(@Nullable BatchTimingPolicy timingPolicy) {
+        mTimingPolicy = timingPolicy;
+    }
+
+    /**
+     * Sets the listener that receives {@link AnimationStats} for every window of animations, if any. Frames are only
+     * monitored while there is a listener.
+     */
+    public void setAnimationMetricsListener(@Nullable AnimationMetricsListener animationMetricsListener) {
+        if (mFrameMonitor != null) {
+            mFrameMonitor.cancel();
+        }
+        mFrameMonitor = animationMetricsListener != null ? new AnimationFrameMonitor(animationMetricsListener) : null;
+    }
+
+    public boolean isInPlaceChangeAnimationsEnabled() {
+        return mInPlaceChangeAnimationsEnabled;
+    }
+
+    /**
+     * Sets whether changes without payloads reuse their holder (disabled by default). When enabled, the old content is
+     * drawn to a bitmap before the holder is rebound, and faded out over the new content, instead of binding a second
+     * holder and cross-fading both. Changes then take a single holder and no hardware layers.
+     *
+     * Only has an effect from {@link Build.VERSION_CODES#KITKAT} on, and when change animations are supported.
+     */
+    public void setInPlaceChangeAnimationsEnabled(boolean inPlaceChangeAnimationsEnabled) {
+        mInPlaceChangeAnimationsEnabled = inPlaceChangeAnimationsEnabled;
+        if (!inPlaceChangeAnimationsEnabled) {
+            mSnapshotPool.clear();
+            mSnapshotCanvas = null;
+        }
+    }
+
+    private boolean canAnimateChangesInPlace() {
+        return mInPlaceChangeAnimationsEnabled && getSupportsChangeAnimations()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    public boolean isViewportCullingEnabled() {
+        return mViewportCullingEnabled;
+    }
+
+    /**
+     * Sets whether holders that are never visible while animating jump to their end state right away (disabled by
+     * default). A holder is never visible when the area it covers from its start to its end position is outside the
+     * bounds returned by {@link #getVisibleBounds(RecyclerView, Rect)}.
+     */
+    public void setViewportCullingEnabled(boolean viewportCullingEnabled) {
+        mViewportCullingEnabled = viewportCullingEnabled;
+    }
+
+    /**
+     * Sets {@code outBounds} to the region of {@code parent} where its children can be seen, in its coordinates. Used
+     * when viewport culling is enabled, see {@link #setViewportCullingEnabled(boolean)}.
+     *
+     * Defaults to the bounds of {@code parent}, minus its padding if it clips children to it. Override to exclude
+     * regions covered by other views, such as sticky headers.
+     */
+    protected void getVisibleBounds(@NonNull RecyclerView parent, @NonNull Rect outBounds) {
+        if (parent.getClipToPadding()) {
+            outBounds.set(parent.getPaddingLeft(), parent.getPaddingTop(),
+                          parent.getWidth() - parent.getPaddingRight(), parent.getHeight() - parent.getPaddingBottom());
+        } else {
+            outBounds.set(0, 0, parent.getWidth(), parent.getHeight());
+        }
+    }
+
+    public int getMaxAnimationCount() {
+        return mMaxAnimationCount;
+    }
+
+    /**
+     * Sets the maximum number of holders animating at once (unlimited by default). When more animations are pending,
+     * the holders with the largest visible area animate and the rest jump to their end state right away.
+     *
+     * Each side of a change animation counts as one holder.
+     */
+    public void setMaxAnimationCount(int maxAnimationCount) {
+        if (maxAnimationCount < 0) {
+            throw new IllegalArgumentException("Max animation count must be non-negative: " + maxAnimationCount);
+        }
+        mMaxAnimationCount = maxAnimationCount;
+    }
+
+    public long getMaxLayerArea() {
+        return mMaxLayerArea;
+    }
+
+    /**
+     * Sets the maximum area, in pixels, of the hardware layers used by all running animations at once (unlimited by
+     * default). Each animating holder counts as a layer the size of its item view, regardless of the
+     * {@link LayerPolicy}.
+     *
+     * @see #setMaxAnimationCount(int)
+     */
+    public void setMaxLayerArea(long maxLayerArea) {
+        if (maxLayerArea < 0) {
+            throw new IllegalArgumentException("Max layer area must be non-negative: " + maxLayerArea);
+        }
+        mMaxLayerArea = maxLayerArea;
+    }
+
+    /**
+     * Batch of moves that starts them all when run. Batches return to the pool when run, and never earlier, as they can
+     * be posted to a view.
+     */
+    private class MovesBatch implements Runnable {
+        final ArrayList<MoveInfo> moves = new ArrayList<>();
+        long duration;
+
+        @Override
+        public void run() {
+            for (int i = 0; i < moves.size(); i++) {
+                MoveInfo moveInfo = moves.get(i);
+                if (moveInfo.holder != null) {
+                    animateMoveImpl(moveInfo.holder, moveInfo.fromX, moveInfo.fromY, moveInfo.toX, moveInfo.toY,
+                                    duration);
+                }
+                recycleMoveInfo(moveInfo);
+            }
+            moves.clear();
+            mMovesBatchPool.add(this);
+        }
+    }
+
+    /**
+     * Batch of changes that starts them all when run.
+     *
+     * @see MovesBatch
+     */
+    private class ChangesBatch implements Runnable {
+        final ArrayList<ChangeInfo> changes = new ArrayList<>();
+        long duration;
+
+        @Override
+        public void run() {
+            for (int i = 0; i < changes.size(); i++) {
+                ChangeInfo changeInfo = changes.get(i);
+                animateChangeImpl(changeInfo, duration);
+                recycleChangeInfo(changeInfo);
+            }
+            changes.clear();
+            mChangesBatchPool.add(this);
+        }
+    }
+
+    /**
+     * Batch of additions that starts them all when run.
+     *
+     * @see MovesBatch
+     */
+    private class AdditionsBatch implements Runnable {
+        final ArrayList<ViewHolder> additions = new ArrayList<>();
+        long duration;
+
+        @Override
+        public void run() {
+            int startedCount = 0;
+            for (int i = 0; i < additions.size(); i++) {
+                ViewHolder holder = additions.get(i);
+                if (holder != null) {
+                    long startDelay = mTimingPolicy != null ? mTimingPolicy.getAdditionStartDelay(startedCount) : 0;
+                    animateAddImpl(holder, duration, startDelay);
+                    startedCount++;
+                }
+            }
+            additions.clear();
+            mAdditionsBatchPool.add(this);
+        }
+    }
+
     @Override
     public void runPendingAnimations() {
+        removeEndedPendingAnimations();
+        int pendingCount = getPendingCount();
+        if (!cullInvisibleAnimations(pendingCount) || !applyAnimationBudget(getPendingCount())) {
+            return;
+        }
+        Trace.beginSection("WithLayerItemAnimator#runPendingAnimations");
+        int batchSize = getPendingCount();
+        if (mFrameMonitor != null) {
+            mFrameMonitor.onAnimationsStarted(batchSize, pendingCount - batchSize);
+        }
         boolean removalsPending = !mPendingRemovals.isEmpty();
         boolean movesPending = !mPendingMoves.isEmpty();
         boolean changesPending = !mPendingChanges.isEmpty();
         boolean additionsPending = !mPendingAdditions.isEmpty();
-        if (!removalsPending && !movesPending && !additionsPending && !changesPending) {
-            // nothing to animate
-            return;
-        }
+        long removeDuration = getDuration(getRemoveDuration(), batchSize);
+        long moveDuration = getDuration(getMoveDuration(), batchSize);
+        long changeDuration = getDuration(getChangeDuration(), batchSize);
+        // Phases small enough don't delay the following ones.
+        long removeDelay = removalsPending && !isTrivialPhase(mPendingRemovals.size()) ? removeDuration : 0;
+        long moveDelay = movesPending && !isTrivialPhase(mPendingMoves.size()) ? moveDuration : 0;
+        int changeCount = batchSize - mPendingRemovals.size() - mPendingMoves.size() - mPendingAdditions.size();
+        long changeDelay = changesPending && !isTrivialPhase(changeCount) ? changeDuration : 0;
         // First, remove stuff
-        for (ViewHolder holder : mPendingRemovals) {
-            animateRemoveImpl(holder);
+        for (int i = 0; i < mPendingRemovals.size(); i++) {
+            animateRemoveImpl(mPendingRemovals.get(i), removeDuration);
         }
         mPendingRemovals.clear();
         // Next, move stuff
         if (movesPending) {
-            final ArrayList<MoveInfo> moves = new ArrayList<>(mPendingMoves);
-            mMovesList.add(moves);
+            MovesBatch batch = !mMovesBatchPool.isEmpty()
+                               ? mMovesBatchPool.remove(mMovesBatchPool.size() - 1) : new MovesBatch();
+            for (int i = 0; i < mPendingMoves.size(); i++) {
+                MoveInfo moveInfo = mPendingMoves.get(i);
+                batch.moves.add(moveInfo);
+                mAnimationInfos.get(moveInfo.holder).state = STATE_BATCHED;
+            }
+            batch.duration = moveDuration;
             mPendingMoves.clear();
-            Runnable mover = new Runnable() {
-                @Override
-                public void run() {
-                    for (MoveInfo moveInfo : moves) {
-                        animateMoveImpl(moveInfo.holder, moveInfo.fromX, moveInfo.fromY,
-                                        moveInfo.toX, moveInfo.toY);
-                    }
-                    moves.clear();
-                    mMovesList.remove(moves);
-                }
-            };
-            if (removalsPending) {
-                View view = moves.get(0).holder.itemView;
-                view.postOnAnimationDelayed(mover, getRemoveDuration());
+            if (removeDelay > 0) {
+                View view = batch.moves.get(0).holder.itemView;
+                view.postOnAnimationDelayed(batch, removeDelay);
             } else {
-                mover.run();
+                batch.run();
             }
         }
         // Next, change stuff, to run in parallel with move animations
         if (changesPending) {
-            final ArrayList<ChangeInfo> changes = new ArrayList<>(mPendingChanges);
-            mChangesList.add(changes);
-            mPendingChanges.clear();
-            Runnable changer = new Runnable() {
-                @Override
-                public void run() {
-                    for (ChangeInfo change : changes) {
-                        animateChangeImpl(change);
-                    }
-                    changes.clear();
-                    mChangesList.remove(changes);
+            ChangesBatch batch = !mChangesBatchPool.isEmpty()
+                                 ? mChangesBatchPool.remove(mChangesBatchPool.size() - 1) : new ChangesBatch();
+            for (int i = 0; i < mPendingChanges.size(); i++) {
+                ChangeInfo changeInfo = mPendingChanges.get(i);
+                batch.changes.add(changeInfo);
+                if (changeInfo.oldHolder != null) {
+                    mAnimationInfos.get(changeInfo.oldHolder).state = STATE_BATCHED;
                 }
-            };
-            if (removalsPending) {
-                ViewHolder holder = changes.get(0).oldHolder;
-                holder.itemView.postOnAnimationDelayed(changer, getRemoveDuration());
+                if (changeInfo.newHolder != null) {
+                    mAnimationInfos.get(changeInfo.newHolder).state = STATE_BATCHED;
+                }
+            }
+            batch.duration = changeDuration;
+            mPendingChanges.clear();
+            if (removeDelay > 0) {
+                ChangeInfo changeInfo = batch.changes.get(0);
+                ViewHolder holder = changeInfo.oldHolder != null ? changeInfo.oldHolder : changeInfo.newHolder;
+                holder.itemView.postOnAnimationDelayed(batch, removeDelay);
             } else {
-                changer.run();
+                batch.run();
             }
         }
         // Next, add stuff
         if (additionsPending) {
-            final ArrayList<ViewHolder> additions = new ArrayList<>(mPendingAdditions);
-            mAdditionsList.add(additions);
+            AdditionsBatch batch = !mAdditionsBatchPool.isEmpty()
+                                   ? mAdditionsBatchPool.remove(mAdditionsBatchPool.size() - 1) : new AdditionsBatch();
+            for (int i = 0; i < mPendingAdditions.size(); i++) {
+                ViewHolder holder = mPendingAdditions.get(i);
+                AnimationInfo info = mAnimationInfos.get(holder);
+                info.state = STATE_BATCHED;
+                info.list = batch.additions;
+                info.index = batch.additions.size();
+                batch.additions.add(holder);
+            }
+            batch.duration = getDuration(getAddDuration(), batchSize);
             mPendingAdditions.clear();
-            Runnable adder = new Runnable() {
-                @Override
-                public void run() {
-                    for (ViewHolder holder : additions) {
-                        animateAddImpl(holder);
-                    }
-                    additions.clear();
-                    mAdditionsList.remove(additions);
+            long totalDelay = removeDelay + Math.max(moveDelay, changeDelay);
+            if (totalDelay > 0) {
+                View view = batch.additions.get(0).itemView;
+                view.postOnAnimationDelayed(batch, totalDelay);
+            } else {
+                batch.run();
+            }
+        }
+        Trace.endSection();
+    }
+
+    private long getDuration(long duration, int batchSize) {
+        return mTimingPolicy != null ? mTimingPolicy.getDuration(duration, batchSize) : duration;
+    }
+
+    private boolean isTrivialPhase(int holderCount) {
+        return mTimingPolicy != null && mTimingPolicy.isTrivialPhase(holderCount);
+    }
+
+    /**
+     * Removes the animations ended while pending from the pending lists.
+     */
+    private void removeEndedPendingAnimations() {
+        removeEndedHolders(mPendingRemovals);
+        int size = 0;
+        for (int i = 0; i < mPendingMoves.size(); i++) {
+            MoveInfo moveInfo = mPendingMoves.get(i);
+            if (moveInfo.holder != null) {
+                mPendingMoves.set(size++, moveInfo);
+            } else {
+                recycleMoveInfo(moveInfo);
+            }
+        }
+        removeRange(mPendingMoves, size);
+        size = 0;
+        for (int i = 0; i < mPendingChanges.size(); i++) {
+            ChangeInfo changeInfo = mPendingChanges.get(i);
+            if (changeInfo.oldHolder != null || changeInfo.newHolder != null) {
+                mPendingChanges.set(size++, changeInfo);
+            } else {
+                recycleChangeInfo(changeInfo);
+            }
+        }
+        removeRange(mPendingChanges, size);
+        removeEndedHolders(mPendingAdditions);
+    }
+
+    /**
+     * Removes the {@code null} entries from {@code holders}, updating the indexes of the remaining ones.
+     */
+    private void removeEndedHolders(ArrayList<ViewHolder> holders) {
+        int size = 0;
+        for (int i = 0; i < holders.size(); i++) {
+            ViewHolder holder = holders.get(i);
+            if (holder != null) {
+                mAnimationInfos.get(holder).index = size;
+                holders.set(size++, holder);
+            }
+        }
+        removeRange(holders, size);
+    }
+
+    private static void removeRange(ArrayList<?> list, int fromIndex) {
+        for (int i = list.size() - 1; i >= fromIndex; i--) {
+            list.remove(i);
+        }
+    }
+
+    /**
+     * Returns the number of holders with pending animations. Ended animations must have been removed beforehand.
+     */
+    private int getPendingCount() {
+        int pendingCount = mPendingRemovals.size() + mPendingMoves.size() + mPendingAdditions.size();
+        for (int i = 0; i < mPendingChanges.size(); i++) {
+            ChangeInfo changeInfo = mPendingChanges.get(i);
+            pendingCount += (changeInfo.oldHolder != null ? 1 : 0) + (changeInfo.newHolder != null ? 1 : 0);
+        }
+        return pendingCount;
+    }
+
+    /**
+     * Ends pending animations of holders that are never visible, if viewport culling is enabled.
+     *
+     * @return true if there are still animations pending.
+     */
+    private boolean cullInvisibleAnimations(int pendingCount) {
+        if (pendingCount == 0) {
+            // nothing to animate
+            return false;
+        }
+        if (!mViewportCullingEnabled || !updateVisibleBounds()) {
+            return true;
+        }
+
+        boolean ended = false;
+        for (int i = 0; i < mPendingRemovals.size(); i++) {
+            ViewHolder holder = mPendingRemovals.get(i);
+            View view = holder.itemView;
+            if (!isVisible(view, view.getTranslationX(), view.getTranslationY(), view.getTranslationX(),
+                           view.getTranslationY())) {
+                endNotRunningAnimation(mAnimationInfos.get(holder));
+                ended = true;
+            }
+        }
+        for (int i = 0; i < mPendingMoves.size(); i++) {
+            ViewHolder holder = mPendingMoves.get(i).holder;
+            View view = holder.itemView;
+            if (!isVisible(view, view.getTranslationX(), view.getTranslationY(), 0, 0)) {
+                endNotRunningAnimation(mAnimationInfos.get(holder));
+                ended = true;
+            }
+        }
+        for (int i = 0; i < mPendingChanges.size(); i++) {
+            ChangeInfo changeInfo = mPendingChanges.get(i);
+            if (changeInfo.oldHolder != null) {
+                View view = changeInfo.oldHolder.itemView;
+                // Old holders move to the new position, unless changed in place.
+                boolean inPlace = changeInfo.snapshot != null;
+                int toTranslationX = inPlace ? 0 : changeInfo.toX - changeInfo.fromX;
+                int toTranslationY = inPlace ? 0 : changeInfo.toY - changeInfo.fromY;
+                if (!isVisible(view, view.getTranslationX(), view.getTranslationY(), toTranslationX,
+                               toTranslationY)) {
+                    endNotRunningAnimation(mAnimationInfos.get(changeInfo.oldHolder));
+                    ended = true;
+                }
+            }
+            if (changeInfo.newHolder != null) {
+                View view = changeInfo.newHolder.itemView;
+                if (!isVisible(view, view.getTranslationX(), view.getTranslationY(), 0, 0)) {
+                    endNotRunningAnimation(mAnimationInfos.get(changeInfo.newHolder));
+                    ended = true;
                 }
-            };
-            if (removalsPending || movesPending || changesPending) {
-                long removeDuration = removalsPending ? getRemoveDuration() : 0;
-                long moveDuration = movesPending ? getMoveDuration() : 0;
-                long changeDuration = changesPending ? getChangeDuration() : 0;
-                long totalDelay = removeDuration + Math.max(moveDuration, changeDuration);
-                View view = additions.get(0).itemView;
-                view.postOnAnimationDelayed(adder, totalDelay);
+            }
+        }
+        for (int i = 0; i < mPendingAdditions.size(); i++) {
+            ViewHolder holder = mPendingAdditions.get(i);
+            if (!isVisible(holder.itemView, 0, 0, 0, 0)) {
+                endNotRunningAnimation(mAnimationInfos.get(holder));
+                ended = true;
+            }
+        }
+        return !ended || onPendingAnimationsEnded();
+    }
+
+    /**
+     * Sets {@link #mVisibleBounds} from the parent of the pending holders.
+     *
+     * @return false if the holders are not in a {@link RecyclerView}.
+     */
+    private boolean updateVisibleBounds() {
+        ViewHolder holder;
+        if (!mPendingRemovals.isEmpty()) {
+            holder = mPendingRemovals.get(0);
+        } else if (!mPendingMoves.isEmpty()) {
+            holder = mPendingMoves.get(0).holder;
+        } else if (!mPendingChanges.isEmpty()) {
+            ChangeInfo changeInfo = mPendingChanges.get(0);
+            holder = changeInfo.oldHolder != null ? changeInfo.oldHolder : changeInfo.newHolder;
+        } else {
+            holder = mPendingAdditions.get(0);
+        }
+        ViewParent parent = holder.itemView.getParent();
+        if (!(parent instanceof RecyclerView)) {
+            return false;
+        }
+        getVisibleBounds((RecyclerView) parent, mVisibleBounds);
+        return true;
+    }
+
+    /**
+     * Returns whether {@code view} is ever inside {@link #mVisibleBounds} while its translation animates between the
+     * given values.
+     */
+    private boolean isVisible(View view, float fromTranslationX, float fromTranslationY, float toTranslationX,
+                              float toTranslationY) {
+        int left = view.getLeft() + (int) Math.min(fromTranslationX, toTranslationX);
+        int top = view.getTop() + (int) Math.min(fromTranslationY, toTranslationY);
+        int right = view.getRight() + (int) Math.max(fromTranslationX, toTranslationX);
+        int bottom = view.getBottom() + (int) Math.max(fromTranslationY, toTranslationY);
+        return mVisibleBounds.intersects(left, top, right, bottom);
+    }
+
+    /**
+     * Removes the animations just ended from the pending lists, dispatching that animations finished if none are left.
+     *
+     * @return true if there are still animations pending.
+     */
+    private boolean onPendingAnimationsEnded() {
+        removeEndedPendingAnimations();
+        if (mPendingRemovals.isEmpty() && mPendingMoves.isEmpty() && mPendingChanges.isEmpty()
+                && mPendingAdditions.isEmpty()) {
+            dispatchFinishedWhenDone();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ends pending animations that exceed the budget, least visible first.
+     *
+     * @return true if there are still animations pending.
+     */
+    private boolean applyAnimationBudget(int pendingCount) {
+        if (pendingCount == 0) {
+            // nothing to animate
+            return false;
+        }
+        if (mMaxAnimationCount == Integer.MAX_VALUE && mMaxLayerArea == Long.MAX_VALUE) {
+            return true;
+        }
+
+        // Account for the animations already running or about to run.
+        int animationCount = mAnimationInfos.size() - pendingCount;
+        if (animationCount + pendingCount <= mMaxAnimationCount && mMaxLayerArea == Long.MAX_VALUE) {
+            return true;
+        }
+
+        // Sort pending animations by visible area, and keep the largest ones that fit the budget.
+        if (mBudgetKeys.length < pendingCount) {
+            mBudgetKeys = new long[pendingCount];
+        }
+        long[] keys = mBudgetKeys;
+        int keyCount = 0;
+        long layerArea = mLayerArea;
+        for (int i = 0; i < mPendingRemovals.size(); i++) {
+            View view = mPendingRemovals.get(i).itemView;
+            keys[keyCount++] = getBudgetKey(getVisibleArea(view, view.getTranslationX(), view.getTranslationY()),
+                                            KIND_REMOVE, i);
+        }
+        for (int i = 0; i < mPendingMoves.size(); i++) {
+            View view = mPendingMoves.get(i).holder.itemView;
+            // Moves are visible if either their start or end position is.
+            int visibleArea = Math.max(getVisibleArea(view, view.getTranslationX(), view.getTranslationY()),
+                                       getVisibleArea(view, 0, 0));
+            keys[keyCount++] = getBudgetKey(visibleArea, KIND_MOVE, i);
+        }
+        for (int i = 0; i < mPendingChanges.size(); i++) {
+            ChangeInfo changeInfo = mPendingChanges.get(i);
+            if (changeInfo.oldHolder != null) {
+                View view = changeInfo.oldHolder.itemView;
+                keys[keyCount++] = getBudgetKey(
+                        getVisibleArea(view, view.getTranslationX(), view.getTranslationY()), KIND_CHANGE_OLD, i);
+            }
+            if (changeInfo.newHolder != null) {
+                keys[keyCount++] = getBudgetKey(
+                        getVisibleArea(changeInfo.newHolder.itemView, 0, 0), KIND_CHANGE_NEW, i);
+            }
+        }
+        for (int i = 0; i < mPendingAdditions.size(); i++) {
+            keys[keyCount++] = getBudgetKey(getVisibleArea(mPendingAdditions.get(i).itemView, 0, 0), KIND_ADD, i);
+        }
+        for (int i = 0; i < keyCount; i++) {
+            layerArea -= mAnimationInfos.get(getPendingHolder(keys[i])).layerArea;
+        }
+        Arrays.sort(keys, 0, keyCount);
+
+        boolean ended = false;
+        for (int i = keyCount - 1; i >= 0; i--) {
+            AnimationInfo info = mAnimationInfos.get(getPendingHolder(keys[i]));
+            if (animationCount < mMaxAnimationCount && layerArea + info.layerArea <= mMaxLayerArea) {
+                animationCount++;
+                layerArea += info.layerArea;
             } else {
-                adder.run();
+                endNotRunningAnimation(info);
+                ended = true;
             }
         }
+        return !ended || onPendingAnimationsEnded();
+    }
+
+    private ViewHolder getPendingHolder(long budgetKey) {
+        int index = (int) budgetKey & INDEX_MASK;
+        switch ((int) (budgetKey >>> KIND_SHIFT) & 0x7) {
+            case KIND_REMOVE:
+                return mPendingRemovals.get(index);
+            case KIND_MOVE:
+                return mPendingMoves.get(index).holder;
+            case KIND_CHANGE_OLD:
+                return mPendingChanges.get(index).oldHolder;
+            case KIND_CHANGE_NEW:
+                return mPendingChanges.get(index).newHolder;
+            default:
+                return mPendingAdditions.get(index);
+        }
+    }
+
+    private static long getBudgetKey(int visibleArea, int kind, int index) {
+        return ((long) visibleArea << 32) | ((long) kind << KIND_SHIFT) | index;
+    }
+
+    /**
+     * Returns the area of {@code view} inside its parent's bounds, if it were translated by the given amounts.
+     */
+    private static int getVisibleArea(View view, float translationX, float translationY) {
+        int left = view.getLeft() + (int) translationX;
+        int top = view.getTop() + (int) translationY;
+        int right = view.getRight() + (int) translationX;
+        int bottom = view.getBottom() + (int) translationY;
+        ViewParent parent = view.getParent();
+        if (parent instanceof View) {
+            left = Math.max(left, 0);
+            top = Math.max(top, 0);
+            right = Math.min(right, ((View) parent).getWidth());
+            bottom = Math.min(bottom, ((View) parent).getHeight());
+        }
+        return right > left && bottom > top ? (int) Math.min((long) (right - left) * (bottom - top), Integer.MAX_VALUE)
+                                            : 0;
     }
 
     @Override
     public boolean animateRemove(final ViewHolder holder) {
         resetAnimation(holder);
+        AnimationInfo info = obtainAnimationInfo(holder, KIND_REMOVE);
+        info.list = mPendingRemovals;
+        info.index = mPendingRemovals.size();
         mPendingRemovals.add(holder);
         return true;
     }
 
-    private void animateRemoveImpl(final ViewHolder holder) {
+    private void animateRemoveImpl(final ViewHolder holder, long duration) {
         final View view = holder.itemView;
-        final ViewPropertyAnimator animation = view.animate().withLayer();
-        mRemoveAnimations.add(holder);
-        animation.setDuration(getRemoveDuration()).alpha(0).setListener(new AnimatorListenerAdapter() {
+        final ViewPropertyAnimator animation = view.animate();
+        final LayerPolicy layerPolicy = mLayerPolicy;
+        final boolean withLayer = layerPolicy.shouldUseLayer(holder, LayerPolicy.ANIMATION_REMOVE);
+        if (withLayer) {
+            animation.withLayer();
+        }
+        setRunning(holder);
+        animation.setDuration(duration).alpha(0).setListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationStart(Animator anim) {
                 dispatchRemoveStarting(holder);
@@ -206,8 +775,11 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
             public void onAnimationEnd(Animator anim) {
                 animation.setListener(null);
                 view.setAlpha(1);
+                if (withLayer) {
+                    layerPolicy.onLayerReleased(holder, LayerPolicy.ANIMATION_REMOVE);
+                }
                 dispatchRemoveFinished(holder);
-                mRemoveAnimations.remove(holder);
+                recycleAnimationInfo(holder);
                 dispatchFinishedWhenDone();
             }
         }).start();
@@ -217,15 +789,23 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
     public boolean animateAdd(final ViewHolder holder) {
         resetAnimation(holder);
         holder.itemView.setAlpha(0);
+        AnimationInfo info = obtainAnimationInfo(holder, KIND_ADD);
+        info.list = mPendingAdditions;
+        info.index = mPendingAdditions.size();
         mPendingAdditions.add(holder);
         return true;
     }
 
-    private void animateAddImpl(final ViewHolder holder) {
+    private void animateAddImpl(final ViewHolder holder, long duration, final long startDelay) {
         final View view = holder.itemView;
-        final ViewPropertyAnimator animation = view.animate().withLayer();
-        mAddAnimations.add(holder);
-        animation.alpha(1).setDuration(getAddDuration()).
+        final ViewPropertyAnimator animation = view.animate();
+        final LayerPolicy layerPolicy = mLayerPolicy;
+        final boolean withLayer = layerPolicy.shouldUseLayer(holder, LayerPolicy.ANIMATION_ADD);
+        if (withLayer) {
+            animation.withLayer();
+        }
+        setRunning(holder);
+        animation.alpha(1).setDuration(duration).setStartDelay(startDelay).
                 setListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationStart(Animator anim) {
@@ -239,8 +819,15 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
                     @Override
                     public void onAnimationEnd(Animator anim) {
                         animation.setListener(null);
+                        if (startDelay != 0) {
+                            // The start delay sticks to the view's animator, reset it for the following animations.
+                            animation.setStartDelay(0);
+                        }
+                        if (withLayer) {
+                            layerPolicy.onLayerReleased(holder, LayerPolicy.ANIMATION_ADD);
+                        }
                         dispatchAddFinished(holder);
-                        mAddAnimations.remove(holder);
+                        recycleAnimationInfo(holder);
                         dispatchFinishedWhenDone();
                     }
                 }).start();
@@ -265,23 +852,36 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
         if (deltaY != 0) {
             view.setTranslationY(-deltaY);
         }
-        mPendingMoves.add(new MoveInfo(holder, fromX, fromY, toX, toY));
+        MoveInfo moveInfo = !mMoveInfoPool.isEmpty()
+                            ? mMoveInfoPool.remove(mMoveInfoPool.size() - 1) : new MoveInfo();
+        moveInfo.holder = holder;
+        moveInfo.fromX = fromX;
+        moveInfo.fromY = fromY;
+        moveInfo.toX = toX;
+        moveInfo.toY = toY;
+        obtainAnimationInfo(holder, KIND_MOVE).moveInfo = moveInfo;
+        mPendingMoves.add(moveInfo);
         return true;
     }
 
-    private void animateMoveImpl(final ViewHolder holder, int fromX, int fromY, int toX, int toY) {
+    private void animateMoveImpl(final ViewHolder holder, int fromX, int fromY, int toX, int toY, long duration) {
         final View view = holder.itemView;
         final int deltaX = toX - fromX;
         final int deltaY = toY - fromY;
+        final ViewPropertyAnimator animation = view.animate();
+        final LayerPolicy layerPolicy = mLayerPolicy;
+        final boolean withLayer = layerPolicy.shouldUseLayer(holder, LayerPolicy.ANIMATION_MOVE);
+        if (withLayer) {
+            animation.withLayer();
+        }
         if (deltaX != 0) {
-            view.animate().withLayer().translationX(0);
+            animation.translationX(0);
         }
         if (deltaY != 0) {
-            view.animate().withLayer().translationY(0);
+            animation.translationY(0);
         }
-        final ViewPropertyAnimator animation = view.animate();
-        mMoveAnimations.add(holder);
-        animation.setDuration(getMoveDuration()).setListener(new AnimatorListenerAdapter() {
+        setRunning(holder);
+        animation.setDuration(duration).setListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationStart(Animator anim) {
                 dispatchMoveStarting(holder);
@@ -298,13 +898,54 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
             @Override
             public void onAnimationEnd(Animator anim) {
                 animation.setListener(null);
+                if (withLayer) {
+                    layerPolicy.onLayerReleased(holder, LayerPolicy.ANIMATION_MOVE);
+                }
                 dispatchMoveFinished(holder);
-                mMoveAnimations.remove(holder);
+                recycleAnimationInfo(holder);
                 dispatchFinishedWhenDone();
             }
         }).start();
     }
 
+    @NonNull
+    @Override
+    public ItemHolderInfo obtainHolderInfo() {
+        return new SnapshotHolderInfo();
+    }
+
+    @NonNull
+    @Override
+    public ItemHolderInfo recordPreLayoutInformation(@NonNull RecyclerView.State state, @NonNull ViewHolder viewHolder,
+                                                     int changeFlags, @NonNull List<Object> payloads) {
+        ItemHolderInfo info = super.recordPreLayoutInformation(state, viewHolder, changeFlags, payloads);
+        // Changes with payloads are left to the adapter, which only updates part of the content.
+        if ((changeFlags & FLAG_CHANGED) != 0 && payloads.isEmpty() && canAnimateChangesInPlace()
+                && info instanceof SnapshotHolderInfo) {
+            View view = viewHolder.itemView;
+            if (view.getWidth() > 0 && view.getHeight() > 0) {
+                // Snapshots not used by animateChange() are left to the garbage collector.
+                ((SnapshotHolderInfo) info).snapshot = takeSnapshot(view);
+            }
+        }
+        return info;
+    }
+
+    @Override
+    public boolean animateChange(@NonNull ViewHolder oldHolder, @NonNull ViewHolder newHolder,
+                                 @NonNull ItemHolderInfo preInfo, @NonNull ItemHolderInfo postInfo) {
+        if (oldHolder == newHolder && preInfo instanceof SnapshotHolderInfo) {
+            SnapshotHolderInfo snapshotInfo = (SnapshotHolderInfo) preInfo;
+            if (snapshotInfo.snapshot != null) {
+                Bitmap snapshot = snapshotInfo.snapshot;
+                snapshotInfo.snapshot = null;
+                return animateChangeInPlace(oldHolder, snapshot, preInfo.left, preInfo.top, postInfo.left,
+                                            postInfo.top);
+            }
+        }
+        return super.animateChange(oldHolder, newHolder, preInfo, postInfo);
+    }
+
     @Override
     public boolean animateChange(ViewHolder oldHolder, ViewHolder newHolder,
                                  int fromX, int fromY, int toX, int toY) {
@@ -330,25 +971,74 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
             newHolder.itemView.setTranslationY(-deltaY);
             newHolder.itemView.setAlpha(0);
         }
-        mPendingChanges.add(new ChangeInfo(oldHolder, newHolder, fromX, fromY, toX, toY));
+        ChangeInfo changeInfo = obtainChangeInfo(oldHolder, newHolder, fromX, fromY, toX, toY);
+        obtainAnimationInfo(oldHolder, KIND_CHANGE_OLD).changeInfo = changeInfo;
+        if (newHolder != null) {
+            obtainAnimationInfo(newHolder, KIND_CHANGE_NEW).changeInfo = changeInfo;
+        }
+        mPendingChanges.add(changeInfo);
         return true;
     }
 
-    private void animateChangeImpl(final ChangeInfo changeInfo) {
+    /**
+     * Schedules a change of {@code holder}, already rebound, that moves it like {@link #animateMove} and fades
+     * {@code snapshot} of its old content out.
+     */
+    private boolean animateChangeInPlace(ViewHolder holder, Bitmap snapshot, int fromX, int fromY, int toX, int toY) {
+        final View view = holder.itemView;
+        fromX += (int) view.getTranslationX();
+        fromY += (int) view.getTranslationY();
+        resetAnimation(holder);
+        view.setTranslationX(fromX - toX);
+        view.setTranslationY(fromY - toY);
+        ChangeInfo changeInfo = obtainChangeInfo(holder, null, fromX, fromY, toX, toY);
+        changeInfo.snapshot = snapshot;
+        obtainAnimationInfo(holder, KIND_CHANGE_OLD).changeInfo = changeInfo;
+        mPendingChanges.add(changeInfo);
+        return true;
+    }
+
+    private ChangeInfo obtainChangeInfo(ViewHolder oldHolder, ViewHolder newHolder, int fromX, int fromY, int toX,
+                                        int toY) {
+        ChangeInfo changeInfo = !mChangeInfoPool.isEmpty()
+                                ? mChangeInfoPool.remove(mChangeInfoPool.size() - 1) : new ChangeInfo();
+        changeInfo.oldHolder = oldHolder;
+        changeInfo.newHolder = newHolder;
+        changeInfo.fromX = fromX;
+        changeInfo.fromY = fromY;
+        changeInfo.toX = toX;
+        changeInfo.toY = toY;
+        return changeInfo;
+    }
+
+    private void animateChangeImpl(ChangeInfo changeInfo, long duration) {
+        if (changeInfo.snapshot != null) {
+            if (changeInfo.oldHolder != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                animateChangeInPlaceImpl(changeInfo.oldHolder, changeInfo.snapshot, duration);
+                // The snapshot now belongs to the animation.
+                changeInfo.snapshot = null;
+            }
+            return;
+        }
+        // Keep the holders around, as the change info is recycled once the animations start.
         final ViewHolder holder = changeInfo.oldHolder;
         final View view = holder == null ? null : holder.itemView;
         final ViewHolder newHolder = changeInfo.newHolder;
         final View newView = newHolder != null ? newHolder.itemView : null;
         if (view != null) {
-            final ViewPropertyAnimator oldViewAnim = view.animate().withLayer().setDuration(
-                    getChangeDuration());
-            mChangeAnimations.add(changeInfo.oldHolder);
+            final ViewPropertyAnimator oldViewAnim = view.animate().setDuration(duration);
+            final LayerPolicy layerPolicy = mLayerPolicy;
+            final boolean withLayer = layerPolicy.shouldUseLayer(holder, LayerPolicy.ANIMATION_CHANGE);
+            if (withLayer) {
+                oldViewAnim.withLayer();
+            }
+            setRunning(holder);
             oldViewAnim.translationX(changeInfo.toX - changeInfo.fromX);
             oldViewAnim.translationY(changeInfo.toY - changeInfo.fromY);
             oldViewAnim.alpha(0).setListener(new AnimatorListenerAdapter() {
                 @Override
                 public void onAnimationStart(Animator anim) {
-                    dispatchChangeStarting(changeInfo.oldHolder, true);
+                    dispatchChangeStarting(holder, true);
                 }
 
                 @Override
@@ -357,20 +1047,28 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
                     view.setAlpha(1);
                     view.setTranslationX(0);
                     view.setTranslationY(0);
-                    dispatchChangeFinished(changeInfo.oldHolder, true);
-                    mChangeAnimations.remove(changeInfo.oldHolder);
+                    if (withLayer) {
+                        layerPolicy.onLayerReleased(holder, LayerPolicy.ANIMATION_CHANGE);
+                    }
+                    dispatchChangeFinished(holder, true);
+                    recycleAnimationInfo(holder);
                     dispatchFinishedWhenDone();
                 }
             }).start();
         }
         if (newView != null) {
-            final ViewPropertyAnimator newViewAnimation = newView.animate().withLayer();
-            mChangeAnimations.add(changeInfo.newHolder);
-            newViewAnimation.translationX(0).translationY(0).setDuration(getChangeDuration()).
+            final ViewPropertyAnimator newViewAnimation = newView.animate();
+            final LayerPolicy layerPolicy = mLayerPolicy;
+            final boolean withLayer = layerPolicy.shouldUseLayer(newHolder, LayerPolicy.ANIMATION_CHANGE);
+            if (withLayer) {
+                newViewAnimation.withLayer();
+            }
+            setRunning(newHolder);
+            newViewAnimation.translationX(0).translationY(0).setDuration(duration).
                     alpha(1).setListener(new AnimatorListenerAdapter() {
                 @Override
                 public void onAnimationStart(Animator anim) {
-                    dispatchChangeStarting(changeInfo.newHolder, false);
+                    dispatchChangeStarting(newHolder, false);
                 }
                 @Override
                 public void onAnimationEnd(Animator anim) {
@@ -378,33 +1076,140 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
                     newView.setAlpha(1);
                     newView.setTranslationX(0);
                     newView.setTranslationY(0);
-                    dispatchChangeFinished(changeInfo.newHolder, false);
-                    mChangeAnimations.remove(changeInfo.newHolder);
+                    if (withLayer) {
+                        layerPolicy.onLayerReleased(newHolder, LayerPolicy.ANIMATION_CHANGE);
+                    }
+                    dispatchChangeFinished(newHolder, false);
+                    recycleAnimationInfo(newHolder);
                     dispatchFinishedWhenDone();
                 }
             }).start();
         }
     }
 
-    private void endChangeAnimation(List<ChangeInfo> infoList, ViewHolder item) {
-        for (int i = infoList.size() - 1; i >= 0; i--) {
-            ChangeInfo changeInfo = infoList.get(i);
-            if (endChangeAnimationIfNecessary(changeInfo, item)) {
-                if (changeInfo.oldHolder == null && changeInfo.newHolder == null) {
-                    infoList.remove(changeInfo);
-                }
+    @RequiresApi(Build.VERSION_CODES.KITKAT)
+    private void animateChangeInPlaceImpl(final ViewHolder holder, final Bitmap snapshot, long duration) {
+        final View view = holder.itemView;
+        final BitmapDrawable drawable = new BitmapDrawable(view.getResources(), snapshot);
+        drawable.setBounds(0, 0, snapshot.getWidth(), snapshot.getHeight());
+        view.getOverlay().add(drawable);
+        // No layer, as the overlay redraws the view every frame anyway.
+        final ViewPropertyAnimator animation = view.animate();
+        setRunning(holder);
+        animation.translationX(0).translationY(0).setDuration(duration).
+                setUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                    @Override
+                    public void onAnimationUpdate(ValueAnimator anim) {
+                        drawable.setAlpha((int) (255 * (1 - anim.getAnimatedFraction())));
+                    }
+                }).
+                setListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationStart(Animator anim) {
+                        dispatchChangeStarting(holder, true);
+                    }
+                    @Override
+                    public void onAnimationCancel(Animator anim) {
+                        view.setTranslationX(0);
+                        view.setTranslationY(0);
+                    }
+
+                    @Override
+                    public void onAnimationEnd(Animator anim) {
+                        animation.setListener(null);
+                        animation.setUpdateListener(null);
+                        view.getOverlay().remove(drawable);
+                        releaseSnapshot(snapshot);
+                        dispatchChangeFinished(holder, true);
+                        recycleAnimationInfo(holder);
+                        dispatchFinishedWhenDone();
+                    }
+                }).start();
+    }
+
+    /**
+     * Draws {@code view} into a bitmap, reusing a pooled one when large enough.
+     */
+    @RequiresApi(Build.VERSION_CODES.KITKAT)
+    private Bitmap takeSnapshot(View view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        Bitmap snapshot = null;
+        for (int i = mSnapshotPool.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mSnapshotPool.get(i);
+            if (bitmap.getAllocationByteCount() >= (long) width * height * 4) {
+                mSnapshotPool.remove(i);
+                bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                snapshot = bitmap;
+                break;
             }
         }
+        if (snapshot == null) {
+            snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        if (mSnapshotCanvas == null) {
+            mSnapshotCanvas = new Canvas();
+        }
+        mSnapshotCanvas.setBitmap(snapshot);
+        view.draw(mSnapshotCanvas);
+        mSnapshotCanvas.setBitmap(null);
+        return snapshot;
     }
 
-    private void endChangeAnimationIfNecessary(ChangeInfo changeInfo) {
-        if (changeInfo.oldHolder != null) {
-            endChangeAnimationIfNecessary(changeInfo, changeInfo.oldHolder);
+    private void releaseSnapshot(Bitmap snapshot) {
+        if (mInPlaceChangeAnimationsEnabled && mSnapshotPool.size() < MAX_SNAPSHOT_POOL_SIZE) {
+            mSnapshotPool.add(snapshot);
         }
-        if (changeInfo.newHolder != null) {
-            endChangeAnimationIfNecessary(changeInfo, changeInfo.newHolder);
+    }
+
+    private AnimationInfo obtainAnimationInfo(ViewHolder holder, int kind) {
+        AnimationInfo info = !mAnimationInfoPool.isEmpty()
+                             ? mAnimationInfoPool.remove(mAnimationInfoPool.size() - 1) : new AnimationInfo();
+        info.holder = holder;
+        info.kind = kind;
+        info.state = STATE_PENDING;
+        info.layerArea = (long) holder.itemView.getWidth() * holder.itemView.getHeight();
+        mLayerArea += info.layerArea;
+        mAnimationInfos.put(holder, info);
+        return info;
+    }
+
+    private void setRunning(ViewHolder holder) {
+        AnimationInfo info = mAnimationInfos.get(holder);
+        info.state = STATE_RUNNING;
+        info.moveInfo = null;
+        info.changeInfo = null;
+        info.list = null;
+    }
+
+    private void recycleAnimationInfo(ViewHolder holder) {
+        AnimationInfo info = mAnimationInfos.remove(holder);
+        if (info != null) {
+            mLayerArea -= info.layerArea;
+            info.holder = null;
+            info.moveInfo = null;
+            info.changeInfo = null;
+            info.list = null;
+            mAnimationInfoPool.add(info);
         }
     }
+
+    private void recycleMoveInfo(MoveInfo moveInfo) {
+        moveInfo.holder = null;
+        mMoveInfoPool.add(moveInfo);
+    }
+
+    private void recycleChangeInfo(ChangeInfo changeInfo) {
+        changeInfo.oldHolder = null;
+        changeInfo.newHolder = null;
+        if (changeInfo.snapshot != null) {
+            releaseSnapshot(changeInfo.snapshot);
+            changeInfo.snapshot = null;
+        }
+        mChangeInfoPool.add(changeInfo);
+    }
+
     private boolean endChangeAnimationIfNecessary(ChangeInfo changeInfo, ViewHolder item) {
         boolean oldItem = false;
         if (changeInfo.newHolder == item) {
@@ -422,63 +1227,46 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
         return true;
     }
 
+    /**
+     * Ends a pending or batched animation, leaving it in its list to be skipped and removed later.
+     */
+    private void endNotRunningAnimation(AnimationInfo info) {
+        ViewHolder holder = info.holder;
+        View view = holder.itemView;
+        switch (info.kind) {
+            case KIND_REMOVE:
+                info.list.set(info.index, null);
+                view.setAlpha(1);
+                dispatchRemoveFinished(holder);
+                break;
+            case KIND_MOVE:
+                info.moveInfo.holder = null;
+                view.setTranslationY(0);
+                view.setTranslationX(0);
+                dispatchMoveFinished(holder);
+                break;
+            case KIND_CHANGE_OLD:
+            case KIND_CHANGE_NEW:
+                endChangeAnimationIfNecessary(info.changeInfo, holder);
+                break;
+            default:
+                info.list.set(info.index, null);
+                view.setAlpha(1);
+                dispatchAddFinished(holder);
+                break;
+        }
+        recycleAnimationInfo(holder);
+    }
+
     @Override
     public void endAnimation(ViewHolder item) {
         final View view = item.itemView;
         // this will trigger end callback which should set properties to their target values.
         view.animate().cancel();
         // TODO if some other animations are chained to end, how do we cancel them as well?
-        for (int i = mPendingMoves.size() - 1; i >= 0; i--) {
-            MoveInfo moveInfo = mPendingMoves.get(i);
-            if (moveInfo.holder == item) {
-                view.setTranslationY(0);
-                view.setTranslationX(0);
-                dispatchMoveFinished(item);
-                mPendingMoves.remove(i);
-            }
-        }
-        endChangeAnimation(mPendingChanges, item);
-        if (mPendingRemovals.remove(item)) {
-            view.setAlpha(1);
-            dispatchRemoveFinished(item);
-        }
-        if (mPendingAdditions.remove(item)) {
-            view.setAlpha(1);
-            dispatchAddFinished(item);
-        }
-
-        for (int i = mChangesList.size() - 1; i >= 0; i--) {
-            ArrayList<ChangeInfo> changes = mChangesList.get(i);
-            endChangeAnimation(changes, item);
-            if (changes.isEmpty()) {
-                mChangesList.remove(i);
-            }
-        }
-        for (int i = mMovesList.size() - 1; i >= 0; i--) {
-            ArrayList<MoveInfo> moves = mMovesList.get(i);
-            for (int j = moves.size() - 1; j >= 0; j--) {
-                MoveInfo moveInfo = moves.get(j);
-                if (moveInfo.holder == item) {
-                    view.setTranslationY(0);
-                    view.setTranslationX(0);
-                    dispatchMoveFinished(item);
-                    moves.remove(j);
-                    if (moves.isEmpty()) {
-                        mMovesList.remove(i);
-                    }
-                    break;
-                }
-            }
-        }
-        for (int i = mAdditionsList.size() - 1; i >= 0; i--) {
-            ArrayList<ViewHolder> additions = mAdditionsList.get(i);
-            if (additions.remove(item)) {
-                view.setAlpha(1);
-                dispatchAddFinished(item);
-                if (additions.isEmpty()) {
-                    mAdditionsList.remove(i);
-                }
-            }
+        AnimationInfo info = mAnimationInfos.get(item);
+        if (info != null && info.state != STATE_RUNNING) {
+            endNotRunningAnimation(info);
         }
         dispatchFinishedWhenDone();
     }
@@ -493,17 +1281,7 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
 
     @Override
     public boolean isRunning() {
-        return (!mPendingAdditions.isEmpty() ||
-                !mPendingChanges.isEmpty() ||
-                !mPendingMoves.isEmpty() ||
-                !mPendingRemovals.isEmpty() ||
-                !mMoveAnimations.isEmpty() ||
-                !mRemoveAnimations.isEmpty() ||
-                !mAddAnimations.isEmpty() ||
-                !mChangeAnimations.isEmpty() ||
-                !mMovesList.isEmpty() ||
-                !mAdditionsList.isEmpty() ||
-                !mChangesList.isEmpty());
+        return !mAnimationInfos.isEmpty();
     }
 
     /**
@@ -514,98 +1292,50 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
     private void dispatchFinishedWhenDone() {
         if (!isRunning()) {
             dispatchAnimationsFinished();
+            if (mFrameMonitor != null) {
+                mFrameMonitor.onAnimationsFinished();
+            }
         }
     }
 
     @Override
     public void endAnimations() {
-        int count = mPendingMoves.size();
-        for (int i = count - 1; i >= 0; i--) {
-            MoveInfo item = mPendingMoves.get(i);
-            View view = item.holder.itemView;
-            view.setTranslationY(0);
-            view.setTranslationX(0);
-            dispatchMoveFinished(item.holder);
-            mPendingMoves.remove(i);
-        }
-        count = mPendingRemovals.size();
-        for (int i = count - 1; i >= 0; i--) {
-            ViewHolder item = mPendingRemovals.get(i);
-            dispatchRemoveFinished(item);
-            mPendingRemovals.remove(i);
-        }
-        count = mPendingAdditions.size();
-        for (int i = count - 1; i >= 0; i--) {
-            ViewHolder item = mPendingAdditions.get(i);
-            View view = item.itemView;
-            view.setAlpha(1);
-            dispatchAddFinished(item);
-            mPendingAdditions.remove(i);
-        }
-        count = mPendingChanges.size();
-        for (int i = count - 1; i >= 0; i--) {
-            endChangeAnimationIfNecessary(mPendingChanges.get(i));
-        }
-        mPendingChanges.clear();
-        if (!isRunning()) {
-            return;
-        }
-
-        int listCount = mMovesList.size();
-        for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<MoveInfo> moves = mMovesList.get(i);
-            count = moves.size();
-            for (int j = count - 1; j >= 0; j--) {
-                MoveInfo moveInfo = moves.get(j);
-                ViewHolder item = moveInfo.holder;
-                View view = item.itemView;
-                view.setTranslationY(0);
-                view.setTranslationX(0);
-                dispatchMoveFinished(moveInfo.holder);
-                moves.remove(j);
-                if (moves.isEmpty()) {
-                    mMovesList.remove(moves);
-                }
+        // End pending animations first, then batched and running ones. Infos are copied beforehand, as ending them
+        // modifies the map.
+        ArrayList<AnimationInfo> infos = mEndingAnimationInfos;
+        infos.addAll(mAnimationInfos.values());
+        int size = 0;
+        for (int i = 0; i < infos.size(); i++) {
+            AnimationInfo info = infos.get(i);
+            if (info.state == STATE_PENDING) {
+                endNotRunningAnimation(info);
+            } else {
+                infos.set(size++, info);
             }
         }
-        listCount = mAdditionsList.size();
-        for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<ViewHolder> additions = mAdditionsList.get(i);
-            count = additions.size();
-            for (int j = count - 1; j >= 0; j--) {
-                ViewHolder item = additions.get(j);
-                View view = item.itemView;
-                view.setAlpha(1);
-                dispatchAddFinished(item);
-                additions.remove(j);
-                if (additions.isEmpty()) {
-                    mAdditionsList.remove(additions);
-                }
+        removeRange(infos, size);
+        removeEndedPendingAnimations();
+        if (!isRunning()) {
+            infos.clear();
+            if (mFrameMonitor != null) {
+                mFrameMonitor.onAnimationsFinished();
             }
+            return;
         }
-        listCount = mChangesList.size();
-        for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<ChangeInfo> changes = mChangesList.get(i);
-            count = changes.size();
-            for (int j = count - 1; j >= 0; j--) {
-                endChangeAnimationIfNecessary(changes.get(j));
-                if (changes.isEmpty()) {
-                    mChangesList.remove(changes);
-                }
+
+        for (int i = infos.size() - 1; i >= 0; i--) {
+            AnimationInfo info = infos.get(i);
+            if (info.state == STATE_BATCHED) {
+                endNotRunningAnimation(info);
+            } else {
+                info.holder.itemView.animate().cancel();
             }
         }
-
-        cancelAll(mRemoveAnimations);
-        cancelAll(mMoveAnimations);
-        cancelAll(mAddAnimations);
-        cancelAll(mChangeAnimations);
+        infos.clear();
 
         dispatchAnimationsFinished();
-    }
-
-    void cancelAll(List<ViewHolder> viewHolders) {
-        for (int i = viewHolders.size() - 1; i >= 0; i--) {
-            viewHolders.get(i).itemView.animate().cancel();
+        if (mFrameMonitor != null) {
+            mFrameMonitor.onAnimationsFinished();
         }
     }
 
@@ -624,9 +1354,13 @@ public class WithLayerItemAnimator extends SimpleItemAnimator {
      * run a move animation instead.
      * </li>
      * </ul>
+     * <p>
+     * If in-place change animations are enabled (see {@link #setInPlaceChangeAnimationsEnabled(boolean)}), this
+     * returns <code>true</code> as well, and changes without payloads cross-fade from a snapshot of the old content.
      */
     @Override
     public boolean canReuseUpdatedViewHolder(@NonNull ViewHolder viewHolder, @NonNull List<Object> payloads) {
-        return !payloads.isEmpty() || super.canReuseUpdatedViewHolder(viewHolder, payloads);
+        return !payloads.isEmpty() || canAnimateChangesInPlace()
+                || super.canReuseUpdatedViewHolder(viewHolder, payloads);
     }
 }
@@ -0,0 +1,38 @@
+package io.doist.recyclerviewext.diff;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Diff handler that consumes all operations into a {@link Blackhole}, so that the benchmarks measure the diff alone.
+ */
+class BlackholeDiffHandler implements DiffHandler {
+    private final Blackhole blackhole;
+
+    BlackholeDiffHandler(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        blackhole.consume(positionStart);
+        blackhole.consume(itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        blackhole.consume(positionStart);
+        blackhole.consume(itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        blackhole.consume(positionStart);
+        blackhole.consume(itemCount);
+    }
+
+    @Override
+    public void onItemMoved(int fromPosition, int toPosition) {
+        blackhole.consume(fromPosition);
+        blackhole.consume(toPosition);
+    }
+}
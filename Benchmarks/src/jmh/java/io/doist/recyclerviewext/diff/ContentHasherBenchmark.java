@@ -0,0 +1,36 @@
+package io.doist.recyclerviewext.diff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ContentHasher} with {@link Objects#hash(Object...)} for a typical item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentHasherBenchmark {
+    private final ContentHasher hasher = new ContentHasher();
+
+    private String content = "Buy milk and eggs on the way home";
+    private boolean checked = true;
+    private long dueDate = 1_700_000_000_000L;
+    private int priority = 3;
+
+    @Benchmark
+    public long contentHasher() {
+        return hasher.reset().mix(content).mix(checked).mix(dueDate).mix(priority).hash();
+    }
+
+    @Benchmark
+    public long objectsHash() {
+        return Objects.hash(content, checked, dueDate, priority);
+    }
+}
@@ -0,0 +1,46 @@
+package io.doist.recyclerviewext.diff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ItemsDiffer} with workloads where items shift by a bounded distance, for up to 1M items.
+ *
+ * Each invocation diffs a copy-on-write snapshot of the initial items, so it includes copying them once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DiffBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"SINGLE_MOVE", "APPEND", "PREPEND", "CONTENT_CHANGE", "DUPLICATES"})
+    public Workload workload;
+
+    private Items items;
+    private Items newItems;
+
+    @Setup
+    public void setUp() {
+        items = workload.initial(size);
+        newItems = workload.apply(items, new Random(42));
+    }
+
+    @Benchmark
+    public Items diff(Blackhole blackhole) {
+        Items items = this.items.snapshot();
+        ItemsDiffer.diff(items, newItems, new BlackholeDiffHandler(blackhole));
+        return items;
+    }
+}
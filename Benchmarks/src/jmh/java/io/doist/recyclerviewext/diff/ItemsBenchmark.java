@@ -0,0 +1,65 @@
+package io.doist.recyclerviewext.diff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks lookups and updates in {@link Items}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ItemsBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Items items;
+    private int position;
+
+    @Setup
+    public void setUp() {
+        items = new Items(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i, i);
+        }
+    }
+
+    /**
+     * Looks up an id a few positions away from where it's expected.
+     */
+    @Benchmark
+    public int indexOfIdNearby() {
+        position = (position + 1) % size;
+        return items.indexOfId(position, Math.max(position - 5, 0));
+    }
+
+    /**
+     * Looks up an id that is missing, which goes through all items.
+     */
+    @Benchmark
+    public int indexOfIdMissing() {
+        position = (position + 1) % size;
+        return items.indexOfId(-1, position);
+    }
+
+    /**
+     * Moves an item from the middle to the start, as done for each move in a diff.
+     */
+    @Benchmark
+    public Items move() {
+        int middle = size / 2;
+        long id = items.getId(middle);
+        long contentHash = items.getContentHash(middle);
+        items.remove(middle);
+        items.add(0, id, contentHash);
+        return items;
+    }
+}
@@ -0,0 +1,154 @@
+package io.doist.recyclerviewext.diff;
+
+import java.util.Random;
+
+/**
+ * Data sets to diff in benchmarks, each built from an initial data set of sequential ids.
+ */
+enum Workload {
+    /**
+     * Moves a single item from the end to the start.
+     */
+    SINGLE_MOVE {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            int last = items.size() - 1;
+            newItems.remove(last);
+            newItems.add(0, items.getId(last), items.getContentHash(last));
+            return newItems;
+        }
+    },
+
+    /**
+     * Moves a single item from the start to the end. The diff goes forward, so it moves every other item instead.
+     */
+    MOVE_TO_END {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            newItems.remove(0);
+            newItems.add(items.getId(0), items.getContentHash(0));
+            return newItems;
+        }
+    },
+
+    /**
+     * Appends 10 items.
+     */
+    APPEND {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            for (int i = 0; i < 10; i++) {
+                newItems.add(items.size() + i, 0);
+            }
+            return newItems;
+        }
+    },
+
+    /**
+     * Prepends 10 items.
+     */
+    PREPEND {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            for (int i = 0; i < 10; i++) {
+                newItems.add(0, items.size() + i, 0);
+            }
+            return newItems;
+        }
+    },
+
+    /**
+     * Changes the content of 10% of the items, at random.
+     */
+    CONTENT_CHANGE {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            for (int i = 0; i < newItems.size(); i++) {
+                if (random.nextInt(10) == 0) {
+                    newItems.setContentHash(i, newItems.getContentHash(i) + 1);
+                }
+            }
+            return newItems;
+        }
+    },
+
+    /**
+     * Uses only 16 distinct ids for all items, in both data sets, and changes the content of half of them.
+     */
+    DUPLICATES {
+        @Override
+        Items initial(int size) {
+            Items items = new Items(size);
+            for (int i = 0; i < size; i++) {
+                items.add(i % 16, i);
+            }
+            return items;
+        }
+
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            for (int i = 0; i < newItems.size(); i += 2) {
+                newItems.setContentHash(i, newItems.getContentHash(i) + 1);
+            }
+            return newItems;
+        }
+    },
+
+    /**
+     * Shuffles all items at random.
+     */
+    SHUFFLE {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = items.copyOfRange(0, items.size());
+            for (int i = newItems.size() - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long id = newItems.getId(i);
+                long contentHash = newItems.getContentHash(i);
+                newItems.setId(i, newItems.getId(j));
+                newItems.setContentHash(i, newItems.getContentHash(j));
+                newItems.setId(j, id);
+                newItems.setContentHash(j, contentHash);
+            }
+            return newItems;
+        }
+    },
+
+    /**
+     * Deletes 25% of the items, at random.
+     */
+    BULK_DELETE {
+        @Override
+        Items apply(Items items, Random random) {
+            Items newItems = new Items(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                if (random.nextInt(4) != 0) {
+                    newItems.add(items.getId(i), items.getContentHash(i));
+                }
+            }
+            return newItems;
+        }
+    };
+
+    /**
+     * Returns the initial data set with {@code size} items.
+     */
+    Items initial(int size) {
+        Items items = new Items(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i, i);
+        }
+        return items;
+    }
+
+    /**
+     * Returns the data set that results from applying this workload to {@code items}, which must not be modified.
+     */
+    abstract Items apply(Items items, Random random);
+}
@@ -0,0 +1,96 @@
+package io.doist.recyclerviewext.diff;
+
+/**
+ * Chainable 64-bit hash builder, meant for implementing {@link DiffCallback#getItemContentHash(int)} without boxing or
+ * allocating a varargs array, as {@link java.util.Objects#hash(Object...)} does.
+ *
+ * Keep an instance around for each thread that computes hashes and reuse it for every item. When diffing in the
+ * background, eg. with {@code AsyncDataSetDiffer}, hashes are computed both there and in the UI thread, so the async
+ * callback needs its own instance:
+ * <pre>{@code
+ * public long getItemContentHash(int position) {
+ *     Item item = items[position];
+ *     return hasher.reset().mix(item.getContent()).mix(item.isChecked()).mix(item.getDueDate()).hash();
+ * }
+ * }</pre>
+ *
+ * Values are mixed in based on MurmurHash3's 64-bit functions, so that small changes in the input propagate to the
+ * whole hash and collisions (which suppress change animations) are unlikely.
+ *
+ * Instances are not thread-safe: sharing one between threads corrupts the hashes.
+ */
+public final class ContentHasher {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private long hash = SEED;
+    private int length;
+
+    /**
+     * Resets this hasher to its initial state, so that it can be reused for a new item.
+     */
+    public ContentHasher reset() {
+        hash = SEED;
+        length = 0;
+        return this;
+    }
+
+    public ContentHasher mix(long value) {
+        long k = value * C1;
+        k = Long.rotateLeft(k, 31);
+        k *= C2;
+        hash ^= k;
+        hash = Long.rotateLeft(hash, 27) * 5 + 0x52DCE729;
+        length++;
+        return this;
+    }
+
+    public ContentHasher mix(int value) {
+        return mix((long) value);
+    }
+
+    public ContentHasher mix(boolean value) {
+        return mix(value ? 1231L : 1237L);
+    }
+
+    /**
+     * Mixes in all chars of {@code value}, along with its length. {@code null} is mixed in differently from an empty
+     * sequence.
+     */
+    public ContentHasher mix(CharSequence value) {
+        if (value == null) {
+            return mix(-1L);
+        }
+        int length = value.length();
+        int i = 0;
+        // Pack 4 chars per mix.
+        for (; i + 4 <= length; i += 4) {
+            mix((long) value.charAt(i)
+                        | (long) value.charAt(i + 1) << 16
+                        | (long) value.charAt(i + 2) << 32
+                        | (long) value.charAt(i + 3) << 48);
+        }
+        long k = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            k |= (long) value.charAt(i) << shift;
+        }
+        return mix(k).mix(length);
+    }
+
+    /**
+     * Returns the hash of all values mixed in since the last {@link #reset()}.
+     */
+    public long hash() {
+        return fmix(hash ^ length);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,18 @@
+package io.doist.recyclerviewext.diff;
+
+/**
+ * Callback that provides the items of a data set to be diffed.
+ */
+public interface DiffCallback {
+    int getItemCount();
+
+    /**
+     * Return a unique id for this item, which is used to locate it in the data set.
+     */
+    long getItemId(int position);
+
+    /**
+     * Return a content hash of this item, which is used to detect changes in it.
+     */
+    long getItemContentHash(int position);
+}
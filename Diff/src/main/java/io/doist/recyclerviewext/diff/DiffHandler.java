@@ -1,9 +1,9 @@
-package io.doist.recyclerviewext.animations;
+package io.doist.recyclerviewext.diff;
 
 /**
  * Interface definition for a diff handler.
  */
-interface DiffHandler {
+public interface DiffHandler {
     void onItemRangeChanged(int positionStart, int itemCount);
 
     void onItemRangeInserted(int positionStart, int itemCount);
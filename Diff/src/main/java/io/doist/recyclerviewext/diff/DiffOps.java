@@ -0,0 +1,118 @@
+package io.doist.recyclerviewext.diff;
+
+import java.util.Arrays;
+
+/**
+ * Diff handler that keeps track of the operations to change the old data set into the new data set, so that they can
+ * be replayed later (eg. in another thread) to another diff handler.
+ */
+public class DiffOps implements DiffHandler {
+    public static final int OP_REMOVE = 0;
+    public static final int OP_INSERT = 1;
+    public static final int OP_CHANGE = 2;
+    public static final int OP_MOVE = 3;
+
+    // Stored as [type1, arg1, arg2, type2, ...], see getOpType(int).
+    private int[] ops;
+    private int opCount;
+
+    public DiffOps() {
+        this(new int[30], 0);
+    }
+
+    DiffOps(int[] ops, int opCount) {
+        this.ops = ops;
+        this.opCount = opCount;
+    }
+
+    public int getOpCount() {
+        return opCount;
+    }
+
+    /**
+     * Returns the type of operation at {@code index}, one of {@link #OP_REMOVE}, {@link #OP_INSERT},
+     * {@link #OP_CHANGE} and {@link #OP_MOVE}.
+     */
+    public int getOpType(int index) {
+        return ops[index * 3];
+    }
+
+    /**
+     * Returns the start position of the operation at {@code index}, or the from position if it is a move.
+     */
+    public int getOpPosition(int index) {
+        return ops[index * 3 + 1];
+    }
+
+    /**
+     * Returns the item count of the operation at {@code index}, or the to position if it is a move.
+     */
+    public int getOpItemCountOrToPosition(int index) {
+        return ops[index * 3 + 2];
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        add(OP_CHANGE, positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        add(OP_INSERT, positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        add(OP_REMOVE, positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemMoved(int fromPosition, int toPosition) {
+        add(OP_MOVE, fromPosition, toPosition);
+    }
+
+    /**
+     * Reports all operations to {@code diffHandler}, in the order they were added.
+     */
+    public void replay(DiffHandler diffHandler) {
+        for (int i = 0; i < opCount; i++) {
+            int arg1 = ops[i * 3 + 1];
+            int arg2 = ops[i * 3 + 2];
+            switch (ops[i * 3]) {
+                case OP_REMOVE:
+                    diffHandler.onItemRangeRemoved(arg1, arg2);
+                    break;
+                case OP_INSERT:
+                    diffHandler.onItemRangeInserted(arg1, arg2);
+                    break;
+                case OP_CHANGE:
+                    diffHandler.onItemRangeChanged(arg1, arg2);
+                    break;
+                case OP_MOVE:
+                    diffHandler.onItemMoved(arg1, arg2);
+                    break;
+            }
+        }
+    }
+
+    public void clear() {
+        opCount = 0;
+    }
+
+    /**
+     * Returns a copy of all operations, as [type1, arg1, arg2, type2, ...].
+     */
+    int[] toArray() {
+        return Arrays.copyOf(ops, opCount * 3);
+    }
+
+    private void add(int type, int arg1, int arg2) {
+        if (opCount * 3 == ops.length) {
+            ops = Arrays.copyOf(ops, ops.length * 2);
+        }
+        ops[opCount * 3] = type;
+        ops[opCount * 3 + 1] = arg1;
+        ops[opCount * 3 + 2] = arg2;
+        opCount++;
+    }
+}
@@ -0,0 +1,195 @@
+package io.doist.recyclerviewext.diff;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed list of operations that change an old data set into a new one, typically produced by a data layer that
+ * already knows what was removed, inserted, changed and moved, so that the data sets don't need to be diffed.
+ *
+ * Operations follow the same conventions as {@link DiffOps}: each operation's positions are relative to the data set
+ * after all previous operations. Scripts can be converted to and from a compact {@code int[]} with
+ * {@link #toArray()} and {@link #fromArray(int[])}, eg. to send them across processes.
+ *
+ * Scripts are validated cheaply when applied, by checking the item counts, checking that items changed by the script
+ * kept their id (and view type) and sampling items that the script leaves untouched. Items inserted by the script are
+ * always read from the new data set, as is the content of changed items. Invalid scripts can slip through when only
+ * unsampled items are wrong, leading to wrong animations, but item counts always match.
+ */
+public final class DiffScript {
+    private static final int SAMPLE_COUNT = 32;
+
+    // States of each position while applying, tracking which items to read from or check against the callback.
+    private static final byte UNTOUCHED = 0;
+    private static final byte INSERTED = 1;
+    private static final byte CHANGED = 2;
+
+    private final int oldItemCount;
+    private final int newItemCount;
+    private final DiffOps ops;
+
+    /**
+     * @param oldItemCount Item count of the data set before the operations.
+     * @param newItemCount Item count of the data set after the operations.
+     * @param ops          Operations to change the old data set into the new one.
+     */
+    public DiffScript(int oldItemCount, int newItemCount, DiffOps ops) {
+        this(oldItemCount, newItemCount, ops.toArray());
+    }
+
+    private DiffScript(int oldItemCount, int newItemCount, int[] ops) {
+        this.oldItemCount = oldItemCount;
+        this.newItemCount = newItemCount;
+        this.ops = new DiffOps(ops, ops.length / 3);
+    }
+
+    public int getOldItemCount() {
+        return oldItemCount;
+    }
+
+    public int getNewItemCount() {
+        return newItemCount;
+    }
+
+    public int getOpCount() {
+        return ops.getOpCount();
+    }
+
+    /**
+     * Returns this script as [oldItemCount, newItemCount, type1, arg1, arg2, type2, ...].
+     */
+    public int[] toArray() {
+        int[] ops = this.ops.toArray();
+        int[] array = new int[ops.length + 2];
+        array[0] = oldItemCount;
+        array[1] = newItemCount;
+        System.arraycopy(ops, 0, array, 2, ops.length);
+        return array;
+    }
+
+    /**
+     * Returns the script previously converted into {@code array} with {@link #toArray()}.
+     */
+    public static DiffScript fromArray(int[] array) {
+        if (array.length < 2 || (array.length - 2) % 3 != 0) {
+            throw new IllegalArgumentException("Invalid script length: " + array.length);
+        }
+        return new DiffScript(array[0], array[1], Arrays.copyOfRange(array, 2, array.length));
+    }
+
+    /**
+     * Applies this script to {@code items}, updating them to match the data set provided by {@code callback} and
+     * reporting all operations to {@code diffHandler}.
+     *
+     * If the script doesn't apply to {@code items} or doesn't result in the data set provided by {@code callback},
+     * nothing is reported and {@code items} are left untouched.
+     *
+     * @return true if the script was applied, false if it didn't validate.
+     */
+    public boolean apply(Items items, DiffCallback callback, DiffHandler diffHandler) {
+        if (items.size() != oldItemCount || callback.getItemCount() != newItemCount) {
+            return false;
+        }
+
+        // Apply all operations to a copy of the items, tracking which items were inserted and changed.
+        Items newItems = items.snapshot();
+        newItems.ensureCapacity(newItemCount);
+        byte[] states = new byte[Math.max(oldItemCount, newItemCount)];
+        int size = oldItemCount;
+        for (int i = 0; i < ops.getOpCount(); i++) {
+            int arg1 = ops.getOpPosition(i);
+            int arg2 = ops.getOpItemCountOrToPosition(i);
+            switch (ops.getOpType(i)) {
+                case DiffOps.OP_REMOVE:
+                    if (arg1 < 0 || arg2 < 0 || arg1 + arg2 > size) {
+                        return false;
+                    }
+                    newItems.remove(arg1, arg1 + arg2);
+                    System.arraycopy(states, arg1 + arg2, states, arg1, size - arg1 - arg2);
+                    size -= arg2;
+                    break;
+
+                case DiffOps.OP_INSERT:
+                    if (arg1 < 0 || arg2 < 0 || arg1 > size) {
+                        return false;
+                    }
+                    if (size + arg2 > states.length) {
+                        states = Arrays.copyOf(states, size + arg2);
+                    }
+                    Items inserted = new Items(arg2);
+                    for (int j = 0; j < arg2; j++) {
+                        inserted.add(0, 0);
+                    }
+                    newItems.replace(arg1, arg1, inserted);
+                    System.arraycopy(states, arg1, states, arg1 + arg2, size - arg1);
+                    Arrays.fill(states, arg1, arg1 + arg2, INSERTED);
+                    size += arg2;
+                    break;
+
+                case DiffOps.OP_CHANGE:
+                    if (arg1 < 0 || arg2 < 0 || arg1 + arg2 > size) {
+                        return false;
+                    }
+                    for (int j = arg1; j < arg1 + arg2; j++) {
+                        if (states[j] == UNTOUCHED) {
+                            states[j] = CHANGED;
+                        }
+                    }
+                    break;
+
+                case DiffOps.OP_MOVE:
+                    if (arg1 < 0 || arg2 < 0 || arg1 >= size || arg2 >= size) {
+                        return false;
+                    }
+                    long id = newItems.getId(arg1);
+                    long contentHash = newItems.getContentHash(arg1);
+                    int viewType = newItems.getViewType(arg1);
+                    byte movedState = states[arg1];
+                    newItems.remove(arg1);
+                    newItems.add(arg2, id, contentHash, viewType);
+                    if (arg1 < arg2) {
+                        System.arraycopy(states, arg1 + 1, states, arg1, arg2 - arg1);
+                    } else {
+                        System.arraycopy(states, arg2, states, arg2 + 1, arg1 - arg2);
+                    }
+                    states[arg2] = movedState;
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+        if (size != newItemCount) {
+            return false;
+        }
+
+        // Read inserted items, check that changed items are the same items, and sample the others to check that they
+        // are untouched. An item replaced by another one or whose view type changed must be removed and inserted.
+        ViewTypeDiffCallback viewTypeCallback =
+                callback instanceof ViewTypeDiffCallback ? (ViewTypeDiffCallback) callback : null;
+        int sampleInterval = Math.max(newItemCount / SAMPLE_COUNT, 1);
+        for (int i = 0; i < newItemCount; i++) {
+            if (states[i] == INSERTED) {
+                newItems.setId(i, callback.getItemId(i));
+                newItems.setContentHash(i, callback.getItemContentHash(i));
+                newItems.setViewType(i, viewTypeCallback != null ? viewTypeCallback.getItemViewType(i) : 0);
+            } else if (states[i] == CHANGED) {
+                int viewType = viewTypeCallback != null ? viewTypeCallback.getItemViewType(i) : 0;
+                if (newItems.getId(i) != callback.getItemId(i) || newItems.getViewType(i) != viewType) {
+                    return false;
+                }
+                newItems.setContentHash(i, callback.getItemContentHash(i));
+            } else if (i % sampleInterval == 0 || i == newItemCount - 1) {
+                int viewType = viewTypeCallback != null ? viewTypeCallback.getItemViewType(i) : 0;
+                if (newItems.getId(i) != callback.getItemId(i)
+                        || newItems.getContentHash(i) != callback.getItemContentHash(i)
+                        || newItems.getViewType(i) != viewType) {
+                    return false;
+                }
+            }
+        }
+
+        items.set(newItems);
+        ops.replay(diffHandler);
+        return true;
+    }
+}
@@ -0,0 +1,299 @@
+package io.doist.recyclerviewext.diff;
+
+import java.util.Arrays;
+
+/**
+ * Helper class to store and manage arrays of ids and content hashes as efficiently as possible, by storing them
+ * contiguously in a single array in the format [id1, contenthash1, id2, contenthash2, ...].
+ *
+ * View types are stored in a separate array, only allocated once an item with a view type other than 0 is added.
+ *
+ * Snapshots share the underlying array with the original until either of them is modified (copy-on-write), and every
+ * modification bumps the version, so that it's cheap to pin the current items and later check if they changed.
+ */
+public class Items {
+    private long[] items;
+    private int[] viewTypes;
+    private int size;
+    private boolean shared;
+    private long version;
+    private boolean countingComparisons;
+    private long comparisonCount;
+
+    public Items() {
+        this(0);
+    }
+
+    public Items(int capacity) {
+        items = new long[capacity*2];
+    }
+
+    /**
+     * Returns a new instance with all items provided by {@code callback}.
+     */
+    public static Items from(DiffCallback callback) {
+        int itemCount = callback.getItemCount();
+        Items items = new Items(itemCount);
+        if (callback instanceof ViewTypeDiffCallback) {
+            ViewTypeDiffCallback viewTypeCallback = (ViewTypeDiffCallback) callback;
+            for (int i = 0; i < itemCount; i++) {
+                long id = callback.getItemId(i);
+                long contentHash = callback.getItemContentHash(i);
+                items.add(i, id, contentHash, viewTypeCallback.getItemViewType(i));
+            }
+        } else {
+            for (int i = 0; i < itemCount; i++) {
+                items.add(callback.getItemId(i), callback.getItemContentHash(i));
+            }
+        }
+        return items;
+    }
+
+    public long getId(int index) {
+        return items[index * 2];
+    }
+
+    public long getContentHash(int index) {
+        return items[index * 2 + 1];
+    }
+
+    public int getViewType(int index) {
+        return viewTypes != null ? viewTypes[index] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a copy of these items, which shares the underlying array until either copy is modified.
+     * The copy starts with the same version as the original.
+     */
+    public Items snapshot() {
+        Items snapshot = new Items();
+        snapshot.items = items;
+        snapshot.viewTypes = viewTypes;
+        snapshot.size = size;
+        snapshot.version = version;
+        snapshot.shared = shared = true;
+        return snapshot;
+    }
+
+    /**
+     * Replaces these items with {@code other}, sharing the underlying array until either is modified.
+     */
+    public void set(Items other) {
+        version++;
+        items = other.items;
+        viewTypes = other.viewTypes;
+        size = other.size;
+        shared = other.shared = true;
+    }
+
+    public void setId(int index, long id) {
+        mutate();
+        items[index * 2] = id;
+    }
+
+    public void setContentHash(int index, long contentHash) {
+        mutate();
+        items[index * 2 + 1] = contentHash;
+    }
+
+    public void setViewType(int index, int viewType) {
+        if (viewTypes == null && viewType == 0) {
+            return;
+        }
+        mutate();
+        ensureViewTypes();
+        viewTypes[index] = viewType;
+    }
+
+    public void add(long id, long contentHash) {
+        add(size, id, contentHash, 0);
+    }
+
+    public void add(int index, long id, long contentHash) {
+        add(index, id, contentHash, 0);
+    }
+
+    public void add(int index, long id, long contentHash, int viewType) {
+        if (size * 2 == items.length) {
+            ensureCapacity(getNextSize());
+        }
+        mutate();
+        System.arraycopy(items, index * 2, items, (index + 1) * 2, (size - index) * 2);
+        items[index * 2] = id;
+        items[index * 2 + 1] = contentHash;
+        if (viewTypes != null || viewType != 0) {
+            ensureViewTypes();
+            System.arraycopy(viewTypes, index, viewTypes, index + 1, size - index);
+            viewTypes[index] = viewType;
+        }
+        size++;
+    }
+
+    public void remove(int index) {
+        remove(index, index + 1);
+    }
+
+    public void remove(int fromIndex, int toIndex) {
+        mutate();
+        System.arraycopy(items, toIndex * 2, items, fromIndex * 2, (size - toIndex) * 2);
+        if (viewTypes != null) {
+            System.arraycopy(viewTypes, toIndex, viewTypes, fromIndex, size - toIndex);
+        }
+        size -= toIndex - fromIndex;
+    }
+
+    /**
+     * Returns a new instance with the items from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive).
+     */
+    public Items copyOfRange(int fromIndex, int toIndex) {
+        Items range = new Items(toIndex - fromIndex);
+        System.arraycopy(items, fromIndex * 2, range.items, 0, (toIndex - fromIndex) * 2);
+        if (viewTypes != null) {
+            range.viewTypes = new int[toIndex - fromIndex];
+            System.arraycopy(viewTypes, fromIndex, range.viewTypes, 0, toIndex - fromIndex);
+        }
+        range.size = toIndex - fromIndex;
+        return range;
+    }
+
+    /**
+     * Replaces the items from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive) with all of {@code other}.
+     */
+    public void replace(int fromIndex, int toIndex, Items other) {
+        int newSize = size - (toIndex - fromIndex) + other.size;
+        ensureCapacity(newSize);
+        mutate();
+        System.arraycopy(items, toIndex * 2, items, (fromIndex + other.size) * 2, (size - toIndex) * 2);
+        System.arraycopy(other.items, 0, items, fromIndex * 2, other.size * 2);
+        if (viewTypes != null || other.viewTypes != null) {
+            ensureViewTypes();
+            System.arraycopy(viewTypes, toIndex, viewTypes, fromIndex + other.size, size - toIndex);
+            if (other.viewTypes != null) {
+                System.arraycopy(other.viewTypes, 0, viewTypes, fromIndex, other.size);
+            } else {
+                Arrays.fill(viewTypes, fromIndex, fromIndex + other.size, 0);
+            }
+        }
+        size = newSize;
+    }
+
+    public void clear() {
+        version++;
+        if (shared) {
+            items = new long[items.length];
+            shared = false;
+        }
+        viewTypes = null;
+        size = 0;
+    }
+
+    public void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity * 2 > items.length) {
+            long[] items = this.items;
+            this.items = new long[minimumCapacity * 2];
+            System.arraycopy(items, 0, this.items, 0, size * 2);
+            if (viewTypes != null) {
+                int[] viewTypes = this.viewTypes;
+                this.viewTypes = new int[minimumCapacity];
+                System.arraycopy(viewTypes, 0, this.viewTypes, 0, size);
+            }
+            shared = false;
+        }
+    }
+
+    public int indexOfId(long id, int startPosition) {
+        // Search back and forth until one of the ends is hit.
+        int j = 0;
+        for (int i = startPosition; i >= 0 && i < size; j++, i += j % 2 == 0 ? j : -j) {
+            if (id == items[i * 2]) {
+                countComparisons(j + 1);
+                return i;
+            }
+        }
+        if (startPosition < size / 2) {
+            // Search forward if the head was hit.
+            int start = Math.max(startPosition * 2 + 1, 0);
+            for (int i = start; i < size; i++) {
+                if (id == items[i * 2]) {
+                    countComparisons(j + i - start + 1);
+                    return i;
+                }
+            }
+            countComparisons(j + Math.max(size - start, 0));
+        } else if (startPosition > size / 2) {
+            // Search backward if the tail was hit.
+            int start = Math.min(size - (size - startPosition) * 2 - 1, size - 1);
+            for (int i = start; i >= 0; i--) {
+                if (id == items[i * 2]) {
+                    countComparisons(j + start - i + 1);
+                    return i;
+                }
+            }
+            countComparisons(j + Math.max(start + 1, 0));
+        } else {
+            countComparisons(j);
+        }
+        return -1;
+    }
+
+    /**
+     * Starts counting the id comparisons performed by {@link #indexOfId(long, int)}, from zero.
+     */
+    public void startCountingComparisons() {
+        comparisonCount = 0;
+        countingComparisons = true;
+    }
+
+    /**
+     * Stops counting id comparisons and returns how many were performed since {@link #startCountingComparisons()}.
+     */
+    public long stopCountingComparisons() {
+        countingComparisons = false;
+        return comparisonCount;
+    }
+
+    private void countComparisons(int comparisons) {
+        if (countingComparisons) {
+            comparisonCount += comparisons;
+        }
+    }
+
+    /**
+     * Bumps the version and ensures the underlying array is not shared before modifying it.
+     */
+    private void mutate() {
+        version++;
+        if (shared) {
+            long[] items = this.items;
+            this.items = new long[items.length];
+            System.arraycopy(items, 0, this.items, 0, size * 2);
+            if (viewTypes != null) {
+                int[] viewTypes = this.viewTypes;
+                this.viewTypes = new int[items.length / 2];
+                System.arraycopy(viewTypes, 0, this.viewTypes, 0, size);
+            }
+            shared = false;
+        }
+    }
+
+    /**
+     * Allocates the view types array, if needed. Must be called after {@link #mutate()}, so that it's never shared.
+     */
+    private void ensureViewTypes() {
+        if (viewTypes == null) {
+            viewTypes = new int[items.length / 2];
+        }
+    }
+
+    private int getNextSize() {
+        return size < 10 ? 10 : size + size / 2;
+    }
+}
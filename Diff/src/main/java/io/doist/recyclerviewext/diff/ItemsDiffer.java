@@ -0,0 +1,122 @@
+package io.doist.recyclerviewext.diff;
+
+/**
+ * Calculates the differences between two sets of {@link Items}, without any dependencies on the Android framework.
+ */
+public final class ItemsDiffer {
+    private ItemsDiffer() {
+    }
+
+    /**
+     * Diffs {@code items} against {@code newItems}, updating {@code items} to match it and reporting all necessary
+     * operations to {@code diffHandler}.
+     */
+    public static void diff(Items items, Items newItems, DiffHandler diffHandler) {
+        int itemCount = newItems.size();
+        items.ensureCapacity(itemCount);
+
+        // Remove all missing items up front to make positions more predictable in the second loop.
+        int removePosition = -1;
+        int removeCount = 0;
+        for (int i = 0; i < items.size(); i++) {
+            // Check if the item was removed. Items whose view type changed are removed and inserted again.
+            int newPosition = newItems.indexOfId(items.getId(i), i);
+            if (newPosition == -1 || newItems.getViewType(newPosition) != items.getViewType(i)) {
+                items.remove(i);
+
+                if (removePosition == -1) {
+                    removePosition = i;
+                    removeCount = 1;
+                } else {
+                    removeCount++;
+                }
+
+                i--;
+            } else if (removePosition != -1) {
+                // Commit pending remove since the current is still there.
+                diffHandler.onItemRangeRemoved(removePosition, removeCount);
+                removePosition = -1;
+            }
+        }
+        if (removePosition != -1) {
+            diffHandler.onItemRangeRemoved(removePosition, removeCount);
+        }
+
+        // Add, change or move items based on their animation / change id.
+        int insertPosition = -1;
+        int insertCount = 0;
+        int changePosition = -1;
+        int changeCount = 0;
+        for (int i = 0; i < itemCount; i++) {
+            // Check if the item was inserted.
+            int oldPosition = items.indexOfId(newItems.getId(i), i);
+            if (oldPosition != -1) {
+                // Item was in the previous data set, it can have moved and / or changed.
+
+                // Commit pending insert since the current wasn't inserted and it'd conflict with the move / change.
+                if (insertPosition != -1) {
+                    diffHandler.onItemRangeInserted(insertPosition, insertCount);
+                    insertPosition = -1;
+                }
+
+                // Check if the item was moved.
+                if (oldPosition != i) {
+                    // Commit pending change to avoid conflicts with the move added below.
+                    if (changePosition != -1) {
+                        diffHandler.onItemRangeChanged(changePosition, changeCount);
+                        changePosition = -1;
+                    }
+
+                    long movedId = items.getId(oldPosition);
+                    long movedChangeHash = items.getContentHash(oldPosition);
+                    int movedViewType = items.getViewType(oldPosition);
+                    items.remove(oldPosition);
+                    items.add(i, movedId, movedChangeHash, movedViewType);
+
+                    diffHandler.onItemMoved(oldPosition, i);
+                }
+
+                // Check if the item was changed.
+                if (items.getContentHash(i) != newItems.getContentHash(i)) {
+                    items.setContentHash(i, newItems.getContentHash(i));
+
+                    if (changePosition == -1) {
+                        changePosition = i;
+                        changeCount = 1;
+                    } else {
+                        changeCount++;
+                    }
+                } else {
+                    // Commit pending change since the current didn't change.
+                    if (changePosition != -1) {
+                        diffHandler.onItemRangeChanged(changePosition, changeCount);
+                        changePosition = -1;
+                    }
+                }
+            } else {
+                // Item was not in the previous data set, it was added.
+
+                // Commit pending change now to avoid conflicts with the move added below.
+                if (changePosition != -1) {
+                    diffHandler.onItemRangeChanged(changePosition, changeCount);
+                    changePosition = -1;
+                }
+
+                items.add(i, newItems.getId(i), newItems.getContentHash(i), newItems.getViewType(i));
+
+                if (insertPosition == -1) {
+                    insertPosition = i;
+                    insertCount = 1;
+                } else {
+                    insertCount++;
+                }
+            }
+        }
+        if (changePosition != -1) {
+            diffHandler.onItemRangeChanged(changePosition, changeCount);
+        }
+        if (insertPosition != -1) {
+            diffHandler.onItemRangeInserted(insertPosition, insertCount);
+        }
+    }
+}
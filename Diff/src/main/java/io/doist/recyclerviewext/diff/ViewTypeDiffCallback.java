@@ -0,0 +1,12 @@
+package io.doist.recyclerviewext.diff;
+
+/**
+ * Callback that also provides the view types of the items, so that items whose view type changed are removed and
+ * inserted again instead of changed.
+ *
+ * Both the old and the new data sets should be provided through this callback, otherwise all items with a view type
+ * other than 0 are considered to have changed view type.
+ */
+public interface ViewTypeDiffCallback extends DiffCallback {
+    int getItemViewType(int position);
+}
@@ -2,10 +2,6 @@ package io.doist.recyclerviewext.choice_modes;
 
 import android.widget.AbsListView;
 
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -18,7 +14,8 @@ import androidx.recyclerview.widget.RecyclerView;
  * {@link android.R.attr#state_activated} reflect the selected state.
  */
 public class MultiSelector extends Selector {
-    private final Set<Long> mSelectedIds = new LinkedHashSet<>();
+    // Primitive set, as isSelected(long) is called on every bind and shouldn't box.
+    private final OrderedLongSet mSelectedIds = new OrderedLongSet();
 
     public MultiSelector(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.Adapter adapter) {
         super(recyclerView, adapter);
@@ -26,7 +23,7 @@ public class MultiSelector extends Selector {
 
     public void setSelected(long id, boolean selected) {
         boolean changed;
-        long[] previousSelectedIds = getSelectedIds();
+        long[] previousSelectedIds = hasOnSelectionChangedListeners() ? getSelectedIds() : null;
         if (selected) {
             changed = mSelectedIds.add(id);
         } else {
@@ -36,7 +33,7 @@ public class MultiSelector extends Selector {
         if (changed) {
             notifyItemChanged(id);
 
-            onSelectionChanged(getSelectedIds(), previousSelectedIds);
+            dispatchSelectionChanged(id, selected, previousSelectedIds);
         }
     }
 
@@ -46,12 +43,7 @@ public class MultiSelector extends Selector {
 
     @Override
     public long[] getSelectedIds() {
-        long[] selectedIds = new long[mSelectedIds.size()];
-        int i = 0;
-        for (Long selectedId : mSelectedIds) {
-            selectedIds[i++] = selectedId;
-        }
-        return selectedIds;
+        return mSelectedIds.toArray();
     }
 
     @Override
@@ -64,14 +56,15 @@ public class MultiSelector extends Selector {
         long[] previousSelectedIds = getSelectedIds();
         boolean hadSelections = getSelectedCount() > 0;
 
-        Iterator<Long> it = mSelectedIds.iterator();
-        while (it.hasNext()) {
-            long selectedId = it.next();
-            it.remove();
-
+        mSelectedIds.clear();
+        for (long selectedId : previousSelectedIds) {
             notifyItemChanged(selectedId);
         }
 
-        onSelectionChanged(getSelectedIds(), previousSelectedIds);
+        if (hadSelections) {
+            dispatchSelectionChanged(EMPTY_IDS, previousSelectedIds, previousSelectedIds);
+        } else {
+            onSelectionChanged(getSelectedIds(), previousSelectedIds);
+        }
     }
 }
@@ -0,0 +1,174 @@
+package io.doist.recyclerviewext.choice_modes;
+
+import java.util.Arrays;
+
+/**
+ * Set of {@code long} values that keeps their insertion order, like a {@link java.util.LinkedHashSet} of
+ * {@link Long}s without the boxing and the linked nodes.
+ *
+ * Values are stored in insertion order in a primitive array, indexed by an open-addressing table. Removing a value
+ * leaves a hole in the array, which is compacted when iterating or when the array fills up. Adding, removing, looking
+ * up and iterating never allocate, other than to grow.
+ */
+final class OrderedLongSet {
+    private static final int MIN_CAPACITY = 8;
+
+    // Marks table slots whose value was removed, so that probing continues past them.
+    private static final int REMOVED = -1;
+
+    // Values in insertion order, including holes left by removals up to mEnd.
+    private long[] mValues;
+    private boolean[] mHoles;
+    private int mEnd;
+    private int mSize;
+
+    // Open-addressing table of 1-based indexes into mValues, twice their size to keep the load factor at or under 50%.
+    private int[] mTable;
+
+    OrderedLongSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(long value) {
+        return mTable[findSlot(value)] > 0;
+    }
+
+    /**
+     * Adds {@code value} at the end, if not present.
+     *
+     * @return true if the value was added.
+     */
+    public boolean add(long value) {
+        int slot = findSlot(value);
+        if (mTable[slot] > 0) {
+            return false;
+        }
+        if (mEnd == mValues.length) {
+            // Compact if at least a quarter of the array is holes, grow otherwise.
+            rehash(mSize * 4 <= mValues.length * 3 ? mValues.length : mValues.length * 2);
+            slot = findSlot(value);
+        }
+        mValues[mEnd] = value;
+        mTable[slot] = ++mEnd;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Removes {@code value}, if present.
+     *
+     * @return true if the value was removed.
+     */
+    public boolean remove(long value) {
+        int slot = findSlot(value);
+        int index = mTable[slot] - 1;
+        if (index < 0) {
+            return false;
+        }
+        mTable[slot] = REMOVED;
+        mHoles[index] = true;
+        mSize--;
+        if (mSize == 0) {
+            clear();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value at {@code index}, in insertion order.
+     */
+    public long get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+        }
+        if (mEnd != mSize) {
+            rehash(mValues.length);
+        }
+        return mValues[index];
+    }
+
+    /**
+     * Returns all values, in insertion order.
+     */
+    public long[] toArray() {
+        if (mEnd != mSize) {
+            rehash(mValues.length);
+        }
+        return Arrays.copyOf(mValues, mSize);
+    }
+
+    public void clear() {
+        if (mEnd > 0) {
+            Arrays.fill(mHoles, 0, mEnd, false);
+            Arrays.fill(mTable, 0);
+            mEnd = 0;
+            mSize = 0;
+        }
+    }
+
+    /**
+     * Returns the slot holding {@code value}, or the empty slot where it would be added.
+     */
+    private int findSlot(long value) {
+        int mask = mTable.length - 1;
+        int slot = mix(value) & mask;
+        int index;
+        while ((index = mTable[slot]) != 0) {
+            if (index != REMOVED && mValues[index - 1] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Compacts the values into an array of {@code capacity}, in order, and reindexes them.
+     */
+    private void rehash(int capacity) {
+        long[] oldValues = mValues;
+        boolean[] oldHoles = mHoles;
+        int oldEnd = mEnd;
+        if (capacity != oldValues.length) {
+            allocate(capacity);
+        } else {
+            // Compact in place.
+            Arrays.fill(mTable, 0);
+        }
+        int mask = mTable.length - 1;
+        int end = 0;
+        for (int i = 0; i < oldEnd; i++) {
+            if (!oldHoles[i]) {
+                long value = oldValues[i];
+                mValues[end] = value;
+                int slot = mix(value) & mask;
+                while (mTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                mTable[slot] = ++end;
+            }
+        }
+        if (mHoles == oldHoles) {
+            Arrays.fill(mHoles, 0, oldEnd, false);
+        }
+        mEnd = end;
+    }
+
+    private void allocate(int capacity) {
+        mValues = new long[capacity];
+        mHoles = new boolean[capacity];
+        mTable = new int[capacity * 2];
+    }
+
+    /**
+     * Spreads the bits of {@code value}, as ids are often sequential.
+     */
+    private static int mix(long value) {
+        int hash = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -21,15 +21,20 @@ public abstract class Selector {
 
     private static final String KEY_SELECTOR_SELECTED_IDS = ":selector_selected_ids";
 
+    static final long[] EMPTY_IDS = new long[0];
+
     protected final RecyclerView mRecyclerView;
     protected final RecyclerView.Adapter mAdapter;
 
     private List<OnSelectionChangedListener> mObservers = new ArrayList<>();
+    private List<OnSelectionDeltaListener> mDeltaObservers = new ArrayList<>();
 
     // Used internally to disable item change notifications.
     // All selection changes lead to these notifications and it can be undesirable or inefficient.
     private boolean mNotifyItemChanges = true;
 
+    private boolean mDeselectMissingIds = true;
+
     protected Selector(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.Adapter adapter) {
         mRecyclerView = recyclerView;
         mAdapter = adapter;
@@ -62,6 +67,64 @@ public abstract class Selector {
         mObservers.clear();
     }
 
+    /**
+     * Adds a listener notified of the ids selected and deselected by each change. Unlike
+     * {@link OnSelectionChangedListener}, it doesn't require copying the whole selection on every change.
+     */
+    public void addOnSelectionDeltaListener(@NonNull OnSelectionDeltaListener observer) {
+        mDeltaObservers.add(observer);
+    }
+
+    public void removeOnSelectionDeltaListener(@NonNull OnSelectionDeltaListener observer) {
+        mDeltaObservers.remove(observer);
+    }
+
+    /**
+     * Returns whether there are {@link OnSelectionChangedListener}s, so that building the arrays passed in to
+     * {@link #onSelectionChanged(long[], long[])} can be skipped otherwise.
+     */
+    protected boolean hasOnSelectionChangedListeners() {
+        return !mObservers.isEmpty();
+    }
+
+    /**
+     * Returns whether there are {@link OnSelectionDeltaListener}s, so that allocating the added and removed ids passed
+     * in to {@link #dispatchSelectionChanged(long[], long[], long[])} can be skipped otherwise.
+     */
+    protected boolean hasOnSelectionDeltaListeners() {
+        return !mDeltaObservers.isEmpty();
+    }
+
+    /**
+     * Notifies all listeners that {@code id} was selected or deselected, after it's applied.
+     *
+     * @see #dispatchSelectionChanged(long[], long[], long[])
+     */
+    protected void dispatchSelectionChanged(long id, boolean selected, @Nullable long[] previousSelectedIds) {
+        // Only allocate the delta if there are listeners for it.
+        long[] ids = hasOnSelectionDeltaListeners() ? new long[]{id} : EMPTY_IDS;
+        dispatchSelectionChanged(selected ? ids : EMPTY_IDS, selected ? EMPTY_IDS : ids, previousSelectedIds);
+    }
+
+    /**
+     * Notifies all listeners of a selection change, after it's applied.
+     *
+     * @param previousSelectedIds the ids selected before the change, only needed (and used) if
+     *                            {@link #hasOnSelectionChangedListeners()}.
+     */
+    protected void dispatchSelectionChanged(@NonNull long[] addedIds, @NonNull long[] removedIds,
+                                            @Nullable long[] previousSelectedIds) {
+        if (previousSelectedIds != null && hasOnSelectionChangedListeners()) {
+            onSelectionChanged(getSelectedIds(), previousSelectedIds);
+        }
+        if (hasOnSelectionDeltaListeners()) {
+            int selectedCount = getSelectedCount();
+            for (int i = 0; i < mDeltaObservers.size(); i++) {
+                mDeltaObservers.get(i).onSelectionDelta(addedIds, removedIds, selectedCount);
+            }
+        }
+    }
+
     protected void onSelectionChanged(long[] selectedIds, long[] previousSelectedIds) {
         for (int i = 0; i < mObservers.size(); i++) {
             mObservers.get(i).onSelectionChanged(selectedIds, previousSelectedIds);
@@ -92,6 +155,30 @@ public abstract class Selector {
         return isSelected;
     }
 
+    /**
+     * Sets whether selected ids that are no longer in the adapter are deselected automatically when items are removed
+     * (enabled by default). This goes through the whole adapter, so consider disabling it if the removed ids are known
+     * and passed in to {@link #onIdsRemoved(long[])}, eg. from a diff.
+     */
+    public void setDeselectMissingIds(boolean deselectMissingIds) {
+        mDeselectMissingIds = deselectMissingIds;
+    }
+
+    /**
+     * Deselects {@code removedIds}, which are no longer in the adapter.
+     */
+    public void onIdsRemoved(@NonNull long[] removedIds) {
+        if (getSelectedCount() > 0) {
+            mNotifyItemChanges = false;
+            for (long removedId : removedIds) {
+                if (isSelected(removedId)) {
+                    setSelected(removedId, false);
+                }
+            }
+            mNotifyItemChanges = true;
+        }
+    }
+
     public void onSaveInstanceState(@NonNull Bundle outState) {
         outState.putLongArray(KEY_SELECTOR_SELECTED_IDS, getSelectedIds());
     }
@@ -142,17 +229,34 @@ public abstract class Selector {
         void onSelectionChanged(long[] selectedIds, long[] previousSelectedIds);
     }
 
+    public interface OnSelectionDeltaListener {
+        /**
+         * Called after the selection changes.
+         *
+         * @param addedIds      ids selected by the change.
+         * @param removedIds    ids deselected by the change.
+         * @param selectedCount number of ids selected after the change.
+         */
+        void onSelectionDelta(long[] addedIds, long[] removedIds, int selectedCount);
+    }
+
     private class SelectorAdapterDataObserver extends RecyclerView.AdapterDataObserver {
         private final DeselectMissingIdsRunnable mDeselectMissingIdsRunnable =
                 new DeselectMissingIdsRunnable();
 
         @Override
         public void onChanged() {
-            mDeselectMissingIdsRunnable.run();
+            if (mDeselectMissingIds) {
+                mDeselectMissingIdsRunnable.run();
+            }
         }
 
         @Override
         public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (!mDeselectMissingIds) {
+                return;
+            }
+
             // Deselect missing ids after all changes go through.
             mRecyclerView.removeCallbacks(mDeselectMissingIdsRunnable);
             mRecyclerView.post(mDeselectMissingIdsRunnable);
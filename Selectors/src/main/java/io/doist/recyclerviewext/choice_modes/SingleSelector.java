@@ -23,7 +23,7 @@ public class SingleSelector extends Selector {
     }
 
     public void setSelected(long id, boolean selected) {
-        long[] previousSelectedIds = getSelectedIds();
+        long[] previousSelectedIds = hasOnSelectionChangedListeners() ? getSelectedIds() : null;
         boolean oldSelected = mSelected;
         long oldSelectedId = mSelectedId;
 
@@ -40,7 +40,16 @@ public class SingleSelector extends Selector {
                 notifyItemChanged(mSelectedId);
             }
 
-            onSelectionChanged(getSelectedIds(), previousSelectedIds);
+            if (oldSelected && mSelected) {
+                // The selection moved from one id to another. Only allocate the delta if there are listeners for it.
+                if (hasOnSelectionDeltaListeners()) {
+                    dispatchSelectionChanged(new long[]{mSelectedId}, new long[]{oldSelectedId}, previousSelectedIds);
+                } else {
+                    dispatchSelectionChanged(EMPTY_IDS, EMPTY_IDS, previousSelectedIds);
+                }
+            } else {
+                dispatchSelectionChanged(mSelected ? mSelectedId : oldSelectedId, mSelected, previousSelectedIds);
+            }
         }
     }
 
@@ -60,7 +69,7 @@ public class SingleSelector extends Selector {
 
     @Override
     public void clearSelected() {
-        long[] previousSelectedIds = getSelectedIds();
+        long[] previousSelectedIds = hasOnSelectionChangedListeners() ? getSelectedIds() : null;
         boolean hadSelection = mSelected;
 
         mSelected = false;
@@ -68,7 +77,7 @@ public class SingleSelector extends Selector {
         if (hadSelection) {
             notifyItemChanged(mSelectedId);
 
-            onSelectionChanged(getSelectedIds(), previousSelectedIds);
+            dispatchSelectionChanged(mSelectedId, false, previousSelectedIds);
         }
     }
 }